@@ -1,12 +1,12 @@
 package org.example.controllers;
 
 import javafx.application.Platform;
-import javafx.collections.ObservableList;
-import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.control.TextArea;
 import javafx.scene.input.KeyCode;
 import org.example.enums.ToolMode;
+import org.example.models.*;
+import org.example.views.DocumentView;
 
 import javafx.fxml.FXML;
 import javafx.scene.Cursor;
@@ -14,7 +14,6 @@ import javafx.scene.shape.*;
 import javafx.scene.Group;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Text;
 import javafx.scene.text.Font;
 
 import java.util.*;
@@ -23,27 +22,36 @@ import java.util.*;
 public class DrawController {
     @FXML Pane drawingArea;
     protected Group contentGroup;
+    protected Group overlayGroup; // служебные узлы редактора: маркеры, рамка выделения, поля ввода текста
+    private final Document document = new Document();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final HitTester hitTester = new HitTester(spatialIndex);
+    private DocumentView documentView;
     private ToolController toolController;
     private ColorController colorController;
     private HistoryController historyController;
     private ResizingController resizingController;
 
     private Rectangle selectionRectangle;
-    private Rectangle currentRectangle;
-    private Ellipse currentEllipse;
-    private Line currentLine;
-    private Path currentCurve;
-    private Polygon currentPolygon;
-    private Polyline currentPolyline;
+    private RectangleModel currentRectangle;
+    private EllipseModel currentEllipse;
+    private LineModel currentLine;
+    private PathModel currentCurve;
+    private PolygonModel currentPolygon;
+    private PolylineModel currentPolyline;
+
+    private static final double HIT_TOLERANCE = 3; // допуск попадания по фигуре, в пикселях экрана
 
     private double startX, startY;
+    private double dragDeltaX, dragDeltaY;           // Суммарное смещение перетаскиваемого выделения
     private static boolean isModified = false;
     private boolean isDraggingSelectedShapes = false; // Флаг для перетаскивания
     private boolean isSelecting = false;             // Флаг для выделения области
     private boolean isDrawing = false;               // Флаг для рисования
+    private boolean isStretching = false;            // Новая фигура растягивается - длинная правка документа
     private double selectionStartX, selectionStartY; // Координаты начала выделения
     protected double currentStrokeWidth = 2.0;
-    private List<Shape> selectedShapes = new ArrayList<>();
+    private List<ShapeModel> selectedShapes = new ArrayList<>();
     private boolean isEditingText = false; // Флаг редактирования текста
 
     public void initialize(Pane drawingArea, ToolController toolController, ColorController colorController, HistoryController historyController, ResizingController resizingController) {
@@ -54,7 +62,15 @@ public class DrawController {
         this.resizingController = resizingController;
 
         this.contentGroup = new Group();
-        drawingArea.getChildren().add(contentGroup);
+        this.overlayGroup = new Group();
+        drawingArea.getChildren().addAll(contentGroup, overlayGroup);
+
+        // Слой редактора повторяет преобразование документа (масштаб), не входя в него
+        overlayGroup.getTransforms().setAll(contentGroup.getLocalToParentTransform());
+        contentGroup.localToParentTransformProperty().addListener((obs, oldTransform, newTransform) ->
+                overlayGroup.getTransforms().setAll(newTransform));
+        this.documentView = new DocumentView(document, contentGroup);
+        document.addListener(spatialIndex);
 
         activateDrawingHandlers();
     }
@@ -69,13 +85,13 @@ public class DrawController {
 
         textArea.setFont(Font.font(MainController.fontSizeValue));
 
-        contentGroup.getChildren().add(textArea);
+        overlayGroup.getChildren().add(textArea);
         Platform.runLater(textArea::requestFocus);
 
         textArea.setOnKeyPressed(event -> {
             if (event.getCode() == KeyCode.ESCAPE) {
                 if (textArea.getText().length() == 0) {
-                    contentGroup.getChildren().remove(textArea);
+                    overlayGroup.getChildren().remove(textArea);
                 }
                 finalizeTextArea(x, y, textArea);
             }
@@ -89,54 +105,45 @@ public class DrawController {
     }
 
     private void finalizeTextArea(double x, double y, TextArea textArea) {
-        if (!contentGroup.getChildren().contains(textArea)) return;
+        if (!overlayGroup.getChildren().contains(textArea)) return;
 
         String text = textArea.getText();
-        Text displayText = new Text(x, y, text);
-        if (colorController.getFillColor() != Color.TRANSPARENT) displayText.setFill(colorController.getFillColor());
-        else displayText.setFill(Color.BLACK);
-        displayText.setFont(Font.font("Arial", MainController.fontWeightValue, MainController.fontSizeValue));
+        Color textColor = colorController.getFillColor() != Color.TRANSPARENT ? colorController.getFillColor() : Color.BLACK;
+        ShapeStyle style = new ShapeStyle(ShapeStyle.TRANSPARENT, Colors.toRgba(textColor), 0,
+                MainController.fontSizeValue, MainController.fontWeightValue.getWeight());
+        TextModel displayText = new TextModel(x, y, text, style);
 
-        contentGroup.getChildren().add(displayText);
+        document.add(displayText);
 
         historyController.addAction(
                 () -> {
-                    contentGroup.getChildren().remove(displayText);
-                    if (!contentGroup.getChildren().contains(textArea)) {
-                        contentGroup.getChildren().add(textArea);
+                    document.remove(displayText);
+                    if (!overlayGroup.getChildren().contains(textArea)) {
+                        overlayGroup.getChildren().add(textArea);
                         Platform.runLater(() -> textArea.requestFocus());
                     }
                 },
                 () -> {
-                    contentGroup.getChildren().remove(textArea);
-                    contentGroup.getChildren().add(displayText);
+                    overlayGroup.getChildren().remove(textArea);
+                    document.add(displayText);
                 }
         );
 
-        contentGroup.getChildren().remove(textArea);
+        overlayGroup.getChildren().remove(textArea);
     }
 
-    public void addShape(Shape shape) {
-        if (!contentGroup.getChildren().contains(shape)) {
-            contentGroup.getChildren().add(shape);
+    public void addShape(ShapeModel shape) {
+        if (!document.contains(shape)) {
+            document.add(shape);
             historyController.addAction(
-                    () -> {
-                        contentGroup.getChildren().remove(shape);
-                        resizingController.removeHandlesFromShape(shape);
-                    },
-                    () -> {
-                        contentGroup.getChildren().add(shape);
-                        resizingController.enableResizing(shape);
-                    }
+                    () -> document.remove(shape),
+                    () -> document.add(shape)
             );
             System.out.println("Shape added.");
         }
     }
 
     public void activateDrawingHandlers() {
-        Map<Shape, Point2D> initialPositions = new HashMap<>();
-        Map<Shape, Point2D> finalPositions = new HashMap<>();
-
         drawingArea.setOnMousePressed(event -> {
             ToolMode currentTool = toolController.getCurrentTool();
             double localX = contentGroup.sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
@@ -144,6 +151,8 @@ public class DrawController {
 
             if (currentTool == ToolMode.AREA) {
                 isSelecting = true;
+                selectedShapes.clear();
+                documentView.setHighlighted(selectedShapes);
                 selectionStartX = localX;
                 selectionStartY = localY;
 
@@ -151,16 +160,15 @@ public class DrawController {
                 selectionRectangle.setFill(Color.LIGHTBLUE.deriveColor(0, 1.0, 1.0, 0.3));
                 selectionRectangle.setStroke(Color.BLUE);
                 selectionRectangle.setStrokeWidth(1);
-                contentGroup.getChildren().add(selectionRectangle);
+                overlayGroup.getChildren().add(selectionRectangle);
             } else if (!selectedShapes.isEmpty() && currentTool == ToolMode.MOVE) {
                 startX = event.getSceneX();
                 startY = event.getSceneY();
                 isDraggingSelectedShapes = true;
                 drawingArea.setCursor(Cursor.MOVE);
-                initialPositions.clear();
-                for (Shape shape : selectedShapes) {
-                    initialPositions.put(shape, new Point2D(shape.getTranslateX(), shape.getTranslateY()));
-                }
+                dragDeltaX = 0;
+                dragDeltaY = 0;
+                documentView.beginDrag(selectedShapes);
             } else if (currentTool == ToolMode.RECTANGLE ||
                     currentTool == ToolMode.ELLIPSE ||
                     currentTool == ToolMode.LINE ||
@@ -174,66 +182,46 @@ public class DrawController {
                 isDrawing = true;
 
                 if (currentTool == ToolMode.RECTANGLE) {
-                    currentRectangle = new Rectangle(startX, startY, 0, 0);
-                    currentRectangle.setFill(colorController.getFillColor());
-                    currentRectangle.setStroke(colorController.getCurrentColor());
-                    currentRectangle.setStrokeWidth(currentStrokeWidth);
+                    currentRectangle = new RectangleModel(startX, startY, 0, 0, currentStyle(colorController.getFillColor()));
                     addShape(currentRectangle);
                 } else if (currentTool == ToolMode.ELLIPSE) {
-                    currentEllipse = new Ellipse(startX, startY, 0, 0);
-                    currentEllipse.setFill(colorController.getFillColor());
-                    currentEllipse.setStroke(colorController.getCurrentColor());
-                    currentEllipse.setStrokeWidth(currentStrokeWidth);
+                    currentEllipse = new EllipseModel(startX, startY, 0, 0, currentStyle(colorController.getFillColor()));
                     addShape(currentEllipse);
                 } else if (currentTool == ToolMode.LINE) {
-                    currentLine = new Line(startX, startY, startX, startY);
-                    currentLine.setStroke(colorController.getCurrentColor());
-                    currentLine.setStrokeWidth(currentStrokeWidth);
+                    currentLine = new LineModel(startX, startY, startX, startY, currentStyle(Color.TRANSPARENT));
                     addShape(currentLine);
                 } else if (currentTool == ToolMode.CURVE) {
-                    currentCurve = new Path();
-                    currentCurve.setStroke(colorController.getCurrentColor());
-                    currentCurve.setStrokeWidth(currentStrokeWidth);
-                    currentCurve.setFill(colorController.getFillColor());
-
-                    MoveTo moveTo = new MoveTo(startX, startY);
-                    currentCurve.getElements().add(moveTo);
+                    currentCurve = new PathModel(currentStyle(colorController.getFillColor()));
+                    currentCurve.moveTo(startX, startY);
                     addShape(currentCurve);
                 } else if (currentTool == ToolMode.POLYGON) {
                     if (event.isSecondaryButtonDown()) {
-                        resizingController.enableResizing(currentPolygon);
                         currentPolygon = null;
                         return;
                     } else if (currentPolygon == null) {
-                        currentPolygon = new Polygon();
-                        currentPolygon.setStroke(colorController.getCurrentColor());
-                        currentPolygon.setStrokeWidth(currentStrokeWidth);
-                        currentPolygon.setFill(colorController.getFillColor());
-
+                        currentPolygon = new PolygonModel(null, currentStyle(colorController.getFillColor()));
                         addShape(currentPolygon);
                     }
-                    currentPolygon.getPoints().addAll(localX, localY);
+                    currentPolygon.addPoint(localX, localY);
+                    document.fireChanged(currentPolygon);
                 } else if (currentTool == ToolMode.TEXT) {
                     addTextArea(startX, startY);
                     isEditingText = true;
                 } else if (currentTool == ToolMode.POLYLINE) {
                     if (event.isSecondaryButtonDown()) {
-                        resizingController.enableResizing(currentPolyline);
                         currentPolyline = null;
                         return;
                     } else if (currentPolyline == null) {
-                        currentPolyline = new Polyline();
-                        currentPolyline.setStroke(colorController.getCurrentColor());
-                        currentPolyline.setStrokeWidth(currentStrokeWidth);
-                        currentPolyline.setFill(Color.TRANSPARENT);
+                        currentPolyline = new PolylineModel(null, currentStyle(Color.TRANSPARENT));
                         addShape(currentPolyline);
                         isDrawing = true;
                     }
-                    currentPolyline.getPoints().addAll(startX, startY);
+                    currentPolyline.addPoint(startX, startY);
 
-                    if (currentPolyline.getPoints().size() == 2) {
-                        currentPolyline.getPoints().addAll(startX, startY);
+                    if (currentPolyline.getPointCount() == 1) {
+                        currentPolyline.addPoint(startX, startY);
                     }
+                    document.fireChanged(currentPolyline);
                 }
                 markAsModified();
             }
@@ -251,6 +239,9 @@ public class DrawController {
                 selectionRectangle.setY(Math.min(selectionStartY, localY));
                 selectionRectangle.setWidth(width);
                 selectionRectangle.setHeight(height);
+
+                // Подсвечиваем фигуры, попадающие в рамку, прямо во время её растягивания
+                documentView.setHighlighted(queryArea(selectionRectangle));
             } else if (isDraggingSelectedShapes) {
                 double deltaX = event.getSceneX() - startX;
                 double deltaY = event.getSceneY() - startY;
@@ -261,117 +252,159 @@ public class DrawController {
                 startY = event.getSceneY();
                 markAsModified();
             } else if (isDrawing) {
+                ShapeModel changed = null;
                 if (currentRectangle != null) {
-                    currentRectangle.setWidth(Math.abs(localX - startX));
-                    currentRectangle.setHeight(Math.abs(localY - startY));
-                    if (localX < startX) currentRectangle.setX(localX);
-                    if (localY < startY) currentRectangle.setY(localY);
+                    currentRectangle.setBounds(Math.min(localX, startX), Math.min(localY, startY),
+                            Math.abs(localX - startX), Math.abs(localY - startY));
+                    changed = currentRectangle;
                 } else if (currentEllipse != null) {
                     currentEllipse.setRadiusX(Math.abs(localX - startX));
                     currentEllipse.setRadiusY(Math.abs(localY - startY));
+                    changed = currentEllipse;
                 } else if (currentLine != null) {
-                    currentLine.setEndX(localX);
-                    currentLine.setEndY(localY);
+                    currentLine.setEnd(localX, localY);
+                    changed = currentLine;
                 } else if (currentCurve != null) {
-                    PathElement lastElement = currentCurve.getElements().get(currentCurve.getElements().size() - 1);
-                    if (lastElement instanceof QuadCurveTo quadCurve) {
-                        quadCurve.setControlX(localX);
-                        quadCurve.setControlY(localY);
+                    // Тянется контрольная точка единственного сегмента Q
+                    if (currentCurve.getCommand(currentCurve.getCommandCount() - 1) == 'Q') {
+                        currentCurve.setPoint(currentCurve.getPointCount() - 2, localX, localY);
                     } else {
-                        QuadCurveTo quadCurveTo = new QuadCurveTo(startX, startY, localX, localY);
-                        currentCurve.getElements().add(quadCurveTo);
+                        currentCurve.quadTo(startX, startY, localX, localY);
                     }
+                    changed = currentCurve;
                 } else if (currentPolygon != null) {
-                    int size = currentPolygon.getPoints().size();
-                    if (size >= 2) {
-                        currentPolygon.getPoints().set(size - 2, localX);
-                        currentPolygon.getPoints().set(size - 1, localY);
+                    int count = currentPolygon.getPointCount();
+                    if (count >= 1) {
+                        currentPolygon.setPoint(count - 1, localX, localY);
                     }
+                    changed = currentPolygon;
                 } else if (currentPolyline != null) {
-                    ObservableList<Double> points = currentPolyline.getPoints();
-                    int size = points.size();
-
-                    if (size >= 2) {
-                        points.set(size - 2, localX);
-                        points.set(size - 1, localY);
+                    int count = currentPolyline.getPointCount();
+                    if (count >= 1) {
+                        currentPolyline.setPoint(count - 1, localX, localY);
                     }
+                    changed = currentPolyline;
+                }
+                if (changed != null) {
+                    // Фигура уже добавлена нажатием; перемещения до отпускания журнал правок запишет один раз
+                    if (!isStretching) {
+                        isStretching = true;
+                        document.beginEdit();
+                    }
+                    document.fireChanged(changed);
                 }
             }
         });
 
         drawingArea.setOnMouseReleased(event -> {
             if (isSelecting && selectionRectangle != null) {
-                Bounds selectionBounds = selectionRectangle.getBoundsInParent();
-                selectedShapes.clear();
-                for (javafx.scene.Node node : contentGroup.getChildren()) {
-                    if (node instanceof Shape shape && shape.getBoundsInParent().intersects(selectionBounds) && !Objects.equals(node.getId(), "draggable-handle")) {
-                        selectedShapes.add(shape);
-                    }
-                }
-                contentGroup.getChildren().remove(selectionRectangle);
+                selectedShapes = queryArea(selectionRectangle);
+                documentView.setHighlighted(selectedShapes);
+                overlayGroup.getChildren().remove(selectionRectangle);
                 selectionRectangle = null;
                 isSelecting = false;
             } else if (isDraggingSelectedShapes) {
                 isDraggingSelectedShapes = false;
                 drawingArea.setCursor(Cursor.DEFAULT);
-                finalPositions.clear();
-                for (Shape shape : selectedShapes) {
-                    finalPositions.put(shape, new Point2D(shape.getTranslateX(), shape.getTranslateY()));
-
-                    resizingController.updateShapePosition(shape);
-                    resizingController.removeHandlesFromShape(shape);
-                    resizingController.enableResizing(shape);
-                }
+                documentView.endDrag();
+                resizingController.commitTranslation(selectedShapes, dragDeltaX, dragDeltaY);
 
                 selectedShapes.clear();
+                documentView.setHighlighted(selectedShapes);
                 markAsModified();
             } else if (isDrawing) {
                 isDrawing = false;
+                endStretching();
                 if (currentRectangle != null) {
-                    resizingController.enableResizing(currentRectangle);
                     currentRectangle = null;
                 } else if (currentEllipse != null) {
-                    resizingController.enableResizing(currentEllipse);
                     currentEllipse = null;
                 } else if (currentCurve != null) {
-                    resizingController.enableResizing(currentCurve);
                     currentCurve = null;
                 } else if (currentLine != null) {
-                    resizingController.enableResizing(currentLine);
                     currentLine = null;
                 } else if (currentPolygon != null && event.getClickCount() == 2) {
-                    resizingController.enableResizing(currentPolygon);
                     currentPolygon = null;
                 } else if (currentPolyline != null && event.getClickCount() == 2) {
-                    resizingController.enableResizing(currentPolyline);
                     currentPolyline = null;
                 }
                 markAsModified();
             }
         });
+
+        drawingArea.setOnMouseClicked(event -> {
+            if (toolController.getCurrentTool() == ToolMode.SELECT && event.isStillSincePress()
+                    && !ResizingController.isHandle(event.getTarget())) {
+                ShapeModel shape = pickShape(event.getSceneX(), event.getSceneY());
+                if (shape != null) {
+                    resizingController.toggleHandles(shape);
+                }
+            }
+        });
+    }
+
+    private void endStretching() {
+        if (isStretching) {
+            isStretching = false;
+            document.endEdit();
+        }
     }
 
     public void deactivateDrawingHandlers() {
+        endStretching();
         drawingArea.setOnMousePressed(null);
         drawingArea.setOnMouseDragged(null);
         drawingArea.setOnMouseReleased(null);
+        drawingArea.setOnMouseClicked(null);
+    }
+
+    // Верхняя фигура документа под точкой сцены (без учёта маркеров и прочих служебных узлов)
+    public ShapeModel pickShape(double sceneX, double sceneY) {
+        Point2D local = contentGroup.sceneToLocal(sceneX, sceneY);
+        double scale = contentGroup.getLocalToSceneTransform().getMxx();
+        return hitTester.hitTest(local.getX(), local.getY(), HIT_TOLERANCE / (scale > 0 ? scale : 1));
     }
 
     private void moveSelectedShapes(double deltaX, double deltaY) {
-        for (Shape shape : selectedShapes) {
-            shape.setTranslateX(shape.getTranslateX() + deltaX);
-            shape.setTranslateY(shape.getTranslateY() + deltaY);
-        }
+        dragDeltaX += deltaX;
+        dragDeltaY += deltaY;
+        documentView.dragBy(deltaX, deltaY);
+    }
+
+    private List<ShapeModel> queryArea(Rectangle area) {
+        return spatialIndex.query(new Bounds2D(area.getX(), area.getY(), area.getX() + area.getWidth(), area.getY() + area.getHeight()));
+    }
+
+    private ShapeStyle currentStyle(Color fillColor) {
+        return new ShapeStyle(Colors.toRgba(colorController.getCurrentColor()), Colors.toRgba(fillColor), currentStrokeWidth);
     }
 
     public void clearCanvas() {
-        contentGroup.getChildren().clear();
+        selectedShapes.clear();
+        document.clear();
+        overlayGroup.getChildren().clear();
     }
 
     public Group getContentGroup() {
         return contentGroup;
     }
 
+    public Group getOverlayGroup() {
+        return overlayGroup;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public DocumentView getDocumentView() {
+        return documentView;
+    }
+
     public void markAsModified() {
         isModified = true;
     }
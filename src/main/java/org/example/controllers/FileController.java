@@ -1,397 +1,413 @@
 package org.example.controllers;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import javafx.animation.AnimationTimer;
+import javafx.concurrent.Task;
 import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.SnapshotParameters;
-import javafx.scene.control.TextArea;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.*;
-import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import javafx.scene.text.Text;
 import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
 import org.apache.batik.util.XMLResourceDescriptor;
-import org.example.models.PathElementParser;
-import org.example.models.ShapeData;
+import org.example.io.AtomicFiles;
+import org.example.io.BinaryDocumentCodec;
+import org.example.io.ChunkedDocumentWriter;
+import org.example.io.Compression;
+import org.example.io.JsonDocumentCodec;
+import org.example.io.ParallelJsonReader;
+import org.example.io.SvgDocumentReader;
+import org.example.io.SvgDocumentWriter;
+import org.example.io.SvgExportProfile;
+import org.example.models.*;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
-import java.lang.reflect.Type;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class FileController {
     private DrawController drawController;
     private ResizingController resizingController;
+    private final JsonDocumentCodec jsonCodec = new JsonDocumentCodec();
+    private final ParallelJsonReader parallelJsonReader = new ParallelJsonReader(jsonCodec);
+    private final BinaryDocumentCodec binaryCodec = new BinaryDocumentCodec();
+    private final ChunkedDocumentWriter binaryWriter = new ChunkedDocumentWriter();
+    private final SvgDocumentWriter svgWriter = new SvgDocumentWriter();
+    private final SvgDocumentReader svgReader = new SvgDocumentReader();
+    private final NumberScanner numbers = new NumberScanner();
+    // Копии фигур с прошлого сохранения JSON/SVG и версии, с которых они сняты. Копии только читаются,
+    // поэтому неизменённые фигуры переходят в следующее сохранение без повторного копирования
+    private Map<ShapeModel, SavedCopy> savedCopies = new IdentityHashMap<>();
+
+    private static final class SavedCopy {
+        final long version;
+        final ShapeModel copy;
+
+        SavedCopy(long version, ShapeModel copy) {
+            this.version = version;
+            this.copy = copy;
+        }
+    }
+
+    private static final int LOAD_BATCH_SIZE = 2000;          // фигур в одной пачке рабочего потока
+    private static final int MAX_SHAPES_PER_PULSE = 20000;    // предел добавления в документ за один кадр
+    private static final long PARALLEL_LOAD_THRESHOLD = 8L << 20; // с этого размера файл разбирается параллельно
 
     public void initialize(DrawController drawController, ResizingController resizingController) {
         this.drawController = drawController;
         this.resizingController = resizingController;
     }
 
-    public void saveToJSON(File file) throws IOException {
-        List<ShapeData> shapeDataList = new ArrayList<>();
-        for (javafx.scene.Node node : drawController.getContentGroup().getChildren()) {
-            if (node instanceof Rectangle rectangle) {
-                ShapeData data = new ShapeData();
-                data.setType("rectangle");
-                data.setX(rectangle.getX());
-                data.setY(rectangle.getY());
-                data.setWidth(rectangle.getWidth());
-                data.setHeight(rectangle.getHeight());
-                data.setStrokeColor(rectangle.getStroke().toString());
-                data.setStrokeWidth(rectangle.getStrokeWidth());
-                data.setFillColor(rectangle.getFill().toString()); // Заливка
-                shapeDataList.add(data);
-            } else if (node instanceof Ellipse ellipse) {
-                ShapeData data = new ShapeData();
-                data.setType("ellipse");
-                data.setCenterX(ellipse.getCenterX());
-                data.setCenterY(ellipse.getCenterY());
-                data.setRadiusX(ellipse.getRadiusX());
-                data.setRadiusY(ellipse.getRadiusY());
-                data.setStrokeColor(ellipse.getStroke().toString());
-                data.setStrokeWidth(ellipse.getStrokeWidth());
-                data.setFillColor(ellipse.getFill().toString());
-                shapeDataList.add(data);
-            } else if (node instanceof Line line) {
-                ShapeData data = new ShapeData();
-                data.setType("line");
-                data.setX(line.getStartX());
-                data.setY(line.getStartY());
-                data.setWidth(line.getEndX());
-                data.setHeight(line.getEndY());
-                data.setStrokeColor(line.getStroke().toString());
-                data.setStrokeWidth(line.getStrokeWidth());
-                data.setFillColor("none");
-                shapeDataList.add(data);
-            } else if (node instanceof Text text) {
-                ShapeData data = new ShapeData();
-                data.setType("text");
-                data.setX(text.getX());
-                data.setY(text.getY());
-                data.setTextContent(text.getText());
-                data.setFontSize(text.getFont().getSize());
-                data.setFontWeight(text.getFont().getStyle());
-                data.setTextColor(text.getFill().toString());
-                shapeDataList.add(data);
-            } else if (node instanceof TextArea textArea) {
-                ShapeData data = new ShapeData();
-                data.setType("textarea");
-                data.setX(textArea.getLayoutX());
-                data.setY(textArea.getLayoutY());
-                data.setWidth(textArea.getPrefWidth());
-                data.setHeight(textArea.getPrefHeight());
-                data.setTextContent(textArea.getText());
-                data.setFontSize(textArea.getFont().getSize());
-                data.setTextColor(textArea.getStyle());
-                shapeDataList.add(data);
-            } else if (node instanceof Polygon polygon) {
-                ShapeData data = new ShapeData();
-                data.setType("polygon");
-                data.setPoints(new ArrayList<>(polygon.getPoints()));
-                data.setStrokeColor(polygon.getStroke().toString());
-                data.setStrokeWidth(polygon.getStrokeWidth());
-                data.setFillColor(polygon.getFill().toString());
-                shapeDataList.add(data);
-            } else if (node instanceof Path path) {
-                StringBuilder pathData = new StringBuilder();
-
-                for (PathElement element : path.getElements()) {
-                    if (element instanceof MoveTo moveTo) {
-                        pathData.append(String.format(Locale.US, "M %.2f %.2f ", moveTo.getX(), moveTo.getY()));
-                    } else if (element instanceof LineTo lineTo) {
-                        pathData.append(String.format(Locale.US, "L %.2f %.2f ", lineTo.getX(), lineTo.getY()));
-                    } else if (element instanceof CubicCurveTo cubic) {
-                        pathData.append(String.format(Locale.US, "C %.2f %.2f, %.2f %.2f, %.2f %.2f ",
-                                cubic.getControlX1(), cubic.getControlY1(),
-                                cubic.getControlX2(), cubic.getControlY2(),
-                                cubic.getX(), cubic.getY()));
-                    } else if (element instanceof QuadCurveTo quad) {
-                        pathData.append(String.format(Locale.US, "Q %.2f %.2f, %.2f %.2f ",
-                                quad.getControlX(), quad.getControlY(),
-                                quad.getX(), quad.getY()));
-                    } else if (element instanceof ClosePath) {
-                        pathData.append("Z ");
-                    }
-                }
-
-                ShapeData data = new ShapeData();
-                data.setType("path");
-                data.setPathData(pathData.toString().trim());
-                data.setStrokeColor(path.getStroke().toString());
-                data.setStrokeWidth(path.getStrokeWidth());
-                data.setFillColor(path.getFill().toString());
-                shapeDataList.add(data);
-            } else if (node instanceof Polyline polyline) {
-                ShapeData data = new ShapeData();
-                data.setType("polyline");
-                data.setPoints(new ArrayList<>(polyline.getPoints()));
-                data.setStrokeColor(polyline.getStroke().toString());
-                data.setStrokeWidth(polyline.getStrokeWidth());
-                data.setFillColor("none");
-                shapeDataList.add(data);
-            } else if (node instanceof Circle) {
-                continue;
-            }
-        }
-        Gson gson = new Gson();
-        try (Writer writer = new FileWriter(file)) {
-            gson.toJson(shapeDataList, writer);
+    // Сохранение в фоне. В FX-потоке снимается согласованная копия документа: фигуры изменяемы, поэтому
+    // копируются фигуры, изменённые с прошлого сохранения (остальные берутся из прошлой копии, но проход
+    // по документу остаётся), а для PNG - кадр слоя документа. Сериализация идёт в рабочем потоке
+    // во временный файл, который затем атомарно заменяет целевой, так что документ можно править сразу.
+    // Значение задачи - размер файла; svgProfile задаёт вид SVG и для других форматов не используется.
+    // Для .vec копируются и пишутся только фигуры, изменённые с прошлого сохранения в этот же файл
+    public Task<Long> saveInBackground(File file, SvgExportProfile svgProfile) {
+        String name = file.getName().toLowerCase();
+        Task<Long> task;
+        if (name.endsWith(".png")) {
+            task = new DocumentSaveTask(file, List.of(), renderPng(), svgProfile, null);
+        } else if (isBinary(file)) {
+            ChunkedDocumentWriter.Plan plan = binaryWriter.plan(file.toPath(), drawController.getDocument().getShapes());
+            task = new DocumentSaveTask(file, List.of(), null, svgProfile, plan);
+        } else if (name.endsWith(".json") || name.endsWith(".json.gz") || name.endsWith(".svg")) {
+            task = new DocumentSaveTask(file, copyDocument(), null, svgProfile, null);
+        } else {
+            throw new IllegalArgumentException("Unsupported file format: " + file.getName());
         }
+        Thread worker = new Thread(task, "document-saver");
+        worker.setDaemon(true);
+        worker.start();
+        return task;
     }
 
-    public void loadFromJSON(File file) throws IOException {
-        Gson gson = new Gson();
-        Type listType = new TypeToken<List<ShapeData>>() {}.getType();
-        try (Reader reader = new FileReader(file)) {
-            List<ShapeData> shapeDataList = gson.fromJson(reader, listType);
-            drawController.getContentGroup().getChildren().clear();
-            for (ShapeData data : shapeDataList) {
-                switch (data.getType()) {
-                    case "rectangle":
-                        Rectangle rectangle = new Rectangle(data.getX(), data.getY(), data.getWidth(), data.getHeight());
-                        rectangle.setStroke(Color.web(data.getStrokeColor()));
-                        rectangle.setStrokeWidth(data.getStrokeWidth());
-                        rectangle.setFill(Color.web(data.getFillColor()));
-                        drawController.getContentGroup().getChildren().add(rectangle);
-                        resizingController.enableResizing(rectangle);
-                        break;
-                    case "ellipse":
-                        Ellipse ellipse = new Ellipse(data.getCenterX(), data.getCenterY(), data.getRadiusX(), data.getRadiusY());
-                        ellipse.setStroke(Color.web(data.getStrokeColor()));
-                        ellipse.setStrokeWidth(data.getStrokeWidth());
-                        ellipse.setFill(Color.web(data.getFillColor()));
-                        drawController.getContentGroup().getChildren().add(ellipse);
-                        resizingController.enableResizing(ellipse);
-                        break;
-                    case "line":
-                        Line line = new Line(data.getX(), data.getY(), data.getWidth(), data.getHeight());
-                        line.setStroke(Color.web(data.getStrokeColor()));
-                        line.setStrokeWidth(data.getStrokeWidth());
-                        drawController.getContentGroup().getChildren().add(line);
-                        resizingController.enableResizing(line);
-                        break;
-                    case "path":
-                        Path path = new Path();
-                        path.getElements().addAll(PathElementParser.parseSvgPathData(data.getPathData()));
-                        path.setStroke(Color.web(data.getStrokeColor()));
-                        path.setStrokeWidth(data.getStrokeWidth());
-                        path.setFill(Color.web(data.getFillColor()));
-                        drawController.getContentGroup().getChildren().add(path);
-                        resizingController.enableResizing(path);
-                        break;
-                    case "polygon":
-                        Polygon polygon = new Polygon();
-                        polygon.getPoints().addAll(data.getPoints());
-                        polygon.setStroke(Color.web(data.getStrokeColor()));
-                        polygon.setStrokeWidth(data.getStrokeWidth());
-                        polygon.setFill(Color.web(data.getFillColor()));
-                        drawController.getContentGroup().getChildren().add(polygon);
-                        resizingController.enableResizing(polygon);
-                        break;
-                    case "polyline":
-                        Polyline polyline = new Polyline();
-                        polyline.getPoints().addAll(data.getPoints());
-                        polyline.setStroke(Color.web(data.getStrokeColor()));
-                        polyline.setStrokeWidth(data.getStrokeWidth());
-                        polyline.setFill(Color.TRANSPARENT);
-                        drawController.getContentGroup().getChildren().add(polyline);
-                        resizingController.enableResizing(polyline);
-                        break;
-                    case "text":
-                        Text text = new Text(data.getX(), data.getY(), data.getTextContent());
-                        text.setFont(Font.font(data.getFontSize()));
-                        text.setFill(Color.web(data.getTextColor()));
-                        text.setFont(Font.font("Arial", data.getFontWeight(), data.getFontSize()));
-                        drawController.getContentGroup().getChildren().add(text);
-                        break;
-                    case "textarea":
-                        TextArea textArea = new TextArea(data.getTextContent());
-                        textArea.setLayoutX(data.getX());
-                        textArea.setLayoutY(data.getY());
-                        textArea.setPrefWidth(data.getWidth());
-                        textArea.setPrefHeight(data.getHeight());
-                        textArea.setFont(Font.font(data.getFontSize()));
-                        textArea.setStyle(data.getTextColor());
-                        drawController.getContentGroup().getChildren().add(textArea);
-                        break;
-                }
+    // Удалённые из документа фигуры выпадают из кэша: он пересобирается по текущему списку
+    private List<ShapeModel> copyDocument() {
+        List<ShapeModel> shapes = drawController.getDocument().getShapes();
+        List<ShapeModel> copy = new ArrayList<>(shapes.size());
+        Map<ShapeModel, SavedCopy> copies = new IdentityHashMap<>(shapes.size());
+        for (ShapeModel shape : shapes) {
+            SavedCopy saved = savedCopies.get(shape);
+            if (saved == null || saved.version != shape.getVersion()) {
+                saved = new SavedCopy(shape.getVersion(), shape.copy());
             }
+            copies.put(shape, saved);
+            copy.add(saved.copy);
         }
+        savedCopies = copies;
+        return copy;
     }
 
-    public void saveToSvg(File file) throws IOException, ParseException {
-        StringBuilder svgContent = new StringBuilder();
-
-        svgContent.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n");
-
-        for (javafx.scene.Node node : drawController.getContentGroup().getChildren()) {
-            if (node instanceof Rectangle rect) {
-                String fillColor = rect.getFill() == null || rect.getFill().equals(Color.TRANSPARENT)
-                        ? "none"
-                        : toHexString((Color) rect.getFill());
-                svgContent.append(String.format(Locale.US,
-                        "<rect x=\"%.2f\" y=\"%.2f\" width=\"%.2f\" height=\"%.2f\" stroke=\"%s\" stroke-width=\"%.2f\" fill=\"%s\" />\n",
-                        rect.getX(),
-                        rect.getY(),
-                        rect.getWidth(),
-                        rect.getHeight(),
-                        toHexString((Color) rect.getStroke()),
-                        rect.getStrokeWidth(),
-                        fillColor
-                ));
-            } else if (node instanceof Ellipse ellipse) {
-                String fillColor = ellipse.getFill() == null || ellipse.getFill().equals(Color.TRANSPARENT)
-                        ? "none"
-                        : toHexString((Color) ellipse.getFill());
-                svgContent.append(String.format(Locale.US,
-                        "<ellipse cx=\"%.2f\" cy=\"%.2f\" rx=\"%.2f\" ry=\"%.2f\" stroke=\"%s\" stroke-width=\"%.2f\" fill=\"%s\" />\n",
-                        ellipse.getCenterX(),
-                        ellipse.getCenterY(),
-                        ellipse.getRadiusX(),
-                        ellipse.getRadiusY(),
-                        toHexString((Color) ellipse.getStroke()),
-                        ellipse.getStrokeWidth(),
-                        fillColor
-                ));
-            } else if (node instanceof Line line) {
-                svgContent.append(String.format(Locale.US,
-                        "<line x1=\"%.2f\" y1=\"%.2f\" x2=\"%.2f\" y2=\"%.2f\" stroke=\"%s\" stroke-width=\"%.2f\" />\n",
-                        line.getStartX(),
-                        line.getStartY(),
-                        line.getEndX(),
-                        line.getEndY(),
-                        toHexString((Color) line.getStroke()),
-                        line.getStrokeWidth()
-                ));
-            } else if (node instanceof Polygon polygon) {
-                String fillColor = polygon.getFill() == null || polygon.getFill().equals(Color.TRANSPARENT)
-                        ? "none"
-                        : toHexString((Color) polygon.getFill());
-                StringBuilder pointsData = new StringBuilder();
-                for (int i = 0; i < polygon.getPoints().size(); i += 2) {
-                    pointsData.append(String.format(Locale.US, "%.2f,%.2f ",
-                            polygon.getPoints().get(i), polygon.getPoints().get(i + 1)));
+    // Рабочая часть фонового сохранения. Прогресс - доля фигур, до которой дошёл кодек
+    private class DocumentSaveTask extends Task<Long> {
+        private final File file;
+        private final List<ShapeModel> shapes;
+        private final WritableImage image;
+        private final SvgExportProfile svgProfile;
+        private final ChunkedDocumentWriter.Plan binaryPlan;
+        private int reported;
+
+        DocumentSaveTask(File file, List<ShapeModel> shapes, WritableImage image, SvgExportProfile svgProfile,
+                         ChunkedDocumentWriter.Plan binaryPlan) {
+            this.file = file;
+            this.shapes = shapes;
+            this.image = image;
+            this.svgProfile = svgProfile;
+            this.binaryPlan = binaryPlan;
+        }
+
+        @Override
+        protected Long call() throws IOException {
+            if (binaryPlan != null) {
+                int total = Math.max(1, binaryPlan.getRewrittenShapeCount());
+                long size = binaryWriter.write(binaryPlan, count -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    updateProgress(count, total);
+                });
+                if (!binaryPlan.isFull()) {
+                    updateMessage(binaryPlan.getRewrittenShapeCount() + " of " + binaryPlan.getShapeCount()
+                            + " shapes rewritten");
                 }
-                svgContent.append(String.format(Locale.US,
-                        "<polygon points=\"%s\" stroke=\"%s\" stroke-width=\"%.2f\" fill=\"%s\" />\n",
-                        pointsData.toString().trim(),
-                        toHexString((Color) polygon.getStroke()),
-                        polygon.getStrokeWidth(),
-                        fillColor
-                ));
-            } else if (node instanceof Path path) {
-                String fillColor = path.getFill() == null || path.getFill().equals(Color.TRANSPARENT)
-                        ? "none"
-                        : toHexString((Color) path.getFill());
-                StringBuilder pathData = new StringBuilder();
-
-                for (PathElement element : path.getElements()) {
-                    if (element instanceof MoveTo moveTo) {
-                        pathData.append(String.format(Locale.US, "M %.2f %.2f ", moveTo.getX(), moveTo.getY()));
-                    } else if (element instanceof LineTo lineTo) {
-                        pathData.append(String.format(Locale.US, "L %.2f %.2f ", lineTo.getX(), lineTo.getY()));
-                    } else if (element instanceof CubicCurveTo cubic) {
-                        pathData.append(String.format(Locale.US, "C %.2f %.2f, %.2f %.2f, %.2f %.2f ",
-                                cubic.getControlX1(), cubic.getControlY1(),
-                                cubic.getControlX2(), cubic.getControlY2(),
-                                cubic.getX(), cubic.getY()));
-                    } else if (element instanceof QuadCurveTo quad) {
-                        pathData.append(String.format(Locale.US, "Q %.2f %.2f, %.2f %.2f ",
-                                quad.getControlX(), quad.getControlY(),
-                                quad.getX(), quad.getY()));
-                    } else if (element instanceof ClosePath) {
-                        pathData.append("Z ");
+                updateProgress(1, 1);
+                return size;
+            }
+            String name = file.getName().toLowerCase();
+            SvgDocumentWriter.Sizes[] svgSizes = new SvgDocumentWriter.Sizes[1];
+            // Кодеки обходят список по индексам - здесь же проверяется отмена
+            List<ShapeModel> tracked = new AbstractList<>() {
+                @Override
+                public ShapeModel get(int index) {
+                    if (index % LOAD_BATCH_SIZE == 0) {
+                        if (isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        if (index > reported) {
+                            reported = index;
+                            updateProgress(index, shapes.size());
+                        }
                     }
+                    return shapes.get(index);
                 }
 
-                svgContent.append(String.format(Locale.US,
-                        "<path d=\"%s\" stroke=\"%s\" stroke-width=\"%.2f\" fill=\"%s\" />\n",
-                        pathData.toString().trim(),
-                        toHexString((Color) path.getStroke()),
-                        path.getStrokeWidth(),
-                        fillColor
-                ));
-            } else if (node instanceof Polyline polyline) {
-                StringBuilder pointsData = new StringBuilder();
-                for (int i = 0; i < polyline.getPoints().size(); i += 2) {
-                    pointsData.append(String.format(Locale.US, "%.2f,%.2f ", polyline.getPoints().get(i), polyline.getPoints().get(i + 1)));
+                @Override
+                public int size() {
+                    return shapes.size();
                 }
-                svgContent.append(String.format(Locale.US,
-                        "<polyline points=\"%s\" stroke=\"%s\" stroke-width=\"%.2f\" fill=\"none\" />\n",
-                        pointsData.toString().trim(),
-                        toHexString((Color) polyline.getStroke()),
-                        polyline.getStrokeWidth()
-                ));
-            } else if (node instanceof Text text) {
-                String fillColor = text.getFill() == null || text.getFill().equals(Color.TRANSPARENT)
-                        ? "#000000"
-                        : toHexString((Color) text.getFill());
-                String fontStyle = text.getFont().getStyle();
-
-                String fontWeightString;
-                if (fontStyle.contains("Light")) {
-                    fontWeightString = "light";
-                } else if (fontStyle.contains("Bold")) {
-                    fontWeightString = "bold";
+            };
+
+            long size = AtomicFiles.write(file.toPath(), temp -> {
+                if (image != null) {
+                    ImageIO.write(SwingFXUtils.fromFXImage(image, null), "png", temp.toFile());
+                } else if (name.endsWith(".svg")) {
+                    // SVG без объявления XML читается как UTF-8 - в нём и пишем
+                    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(temp.toFile()), StandardCharsets.UTF_8))) {
+                        svgSizes[0] = svgWriter.write(tracked, writer, svgProfile);
+                    }
                 } else {
-                    fontWeightString = "normal";
+                    // Имя .json.gz сохраняет документ сжатым: текст проходит через gzip по мере записи
+                    try (Writer writer = openJsonWriter(temp.toFile(), Compression.hasCompressedName(file))) {
+                        jsonCodec.write(tracked, writer);
+                    }
+                }
+            });
+
+            // Для веба - отчёт, сколько сэкономил профиль относительно обычного SVG. Оба размера в байтах
+            // UTF-8 и посчитаны за одну запись
+            if (svgSizes[0] != null && svgProfile != SvgExportProfile.STANDARD) {
+                long standardSize = svgSizes[0].getStandardBytes();
+                long saved = standardSize - svgSizes[0].getBytes();
+                int percent = standardSize == 0 ? 0 : (int) Math.round(saved * 100.0 / standardSize);
+                updateMessage(saved + " bytes / " + percent + "% smaller than standard SVG");
+            }
+            updateProgress(1, 1);
+            return size;
+        }
+    }
+
+    // JSON всегда в UTF-8, независимо от кодировки платформы: так же его читает ParallelJsonReader
+    private static Writer openJsonWriter(File file, boolean compressed) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (compressed) {
+            out = Compression.compress(out);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    // Сжатый документ распаковывается потоком, целиком в памяти он не разворачивается
+    private static Reader openJsonReader(InputStream input) throws IOException {
+        return new BufferedReader(new InputStreamReader(Compression.decompressIfNeeded(input), StandardCharsets.UTF_8));
+    }
+
+    // Загрузка JSON или .vec в фоне: разбор и создание моделей идут в рабочем потоке, а в документ
+    // фигуры попадают пачками - не больше одного addAll за кадр. Прогресс - доля прочитанных байт.
+    // При отмене или ошибке загруженная часть убирается и возвращается прежний документ - те же
+    // объекты фигур, так что история undo/redo к ним по-прежнему применима
+    public Task<Integer> loadInBackground(File file) {
+        List<ShapeModel> previous = new ArrayList<>(drawController.getDocument().getShapes());
+        // Вся загрузка - одна длинная правка: журнал правок не кодирует каждую пачку, а пишет новый снимок в конце
+        drawController.getDocument().beginEdit();
+        drawController.clearCanvas();
+        Queue<List<ShapeModel>> ready = new ConcurrentLinkedQueue<>();
+
+        AnimationTimer attacher = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                attachBatches(ready, MAX_SHAPES_PER_PULSE);
+            }
+        };
+
+        Task<Integer> task = new DocumentLoadTask(file, ready);
+
+        // Слушатель состояния срабатывает раньше обработчиков onSucceeded/onCancelled вызывающего кода
+        task.stateProperty().addListener((obs, oldState, state) -> {
+            switch (state) {
+                case SUCCEEDED -> {
+                    attacher.stop();
+                    attachBatches(ready, Integer.MAX_VALUE);
+                    drawController.getDocument().endEdit();
+                }
+                case CANCELLED, FAILED -> {
+                    attacher.stop();
+                    ready.clear();
+                    drawController.clearCanvas();
+                    drawController.getDocument().addAll(previous);
+                    drawController.getDocument().endEdit();
+                }
+                default -> {
                 }
-                svgContent.append(String.format(Locale.US,
-                        "<text x=\"%.2f\" y=\"%.2f\" font-size=\"%.2f\" font-weight=\"%s\" fill=\"%s\" >%s</text>\n",
-                        text.getX(),
-                        text.getY(),
-                        text.getFont().getSize(),
-                        fontWeightString,
-                        fillColor,
-                        text.getText()
-                ));
             }
+        });
+
+        attacher.start();
+        Thread worker = new Thread(task, "document-loader");
+        worker.setDaemon(true);
+        worker.start();
+        return task;
+    }
+
+    // Рабочая часть фоновой загрузки: читает файл и складывает готовые пачки моделей в очередь
+    private class DocumentLoadTask extends Task<Integer> {
+        private final File file;
+        private final Queue<List<ShapeModel>> ready;
+        private List<ShapeModel> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        private int count;
+
+        DocumentLoadTask(File file, Queue<List<ShapeModel>> ready) {
+            this.file = file;
+            this.ready = ready;
+        }
+
+        @Override
+        protected Integer call() throws IOException {
+            long total = Math.max(1, file.length());
+            if (isBinary(file)) {
+                binaryCodec.read(file.toPath(), (shape, offset) -> {
+                    add(shape);
+                    if (batch.isEmpty()) {
+                        updateProgress(offset, total);
+                    }
+                });
+                ready.add(batch);
+                updateProgress(total, total);
+                return count;
+            }
+            // Сжатый файл нельзя резать на куски по смещениям - он читается одним потоком
+            if (total >= PARALLEL_LOAD_THRESHOLD && !Compression.isCompressed(file)) {
+                parallelJsonReader.read(file.toPath(), (chunk, offset) -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    for (int i = 0; i < chunk.size(); i += LOAD_BATCH_SIZE) {
+                        ready.add(chunk.subList(i, Math.min(chunk.size(), i + LOAD_BATCH_SIZE)));
+                    }
+                    count += chunk.size();
+                    updateProgress(offset, total);
+                });
+                return count;
+            }
+            // Прогресс считается по сжатым байтам, прочитанным с диска
+            try (CountingInputStream input = new CountingInputStream(new FileInputStream(file));
+                 Reader reader = openJsonReader(input)) {
+                jsonCodec.read(reader, shape -> {
+                    add(shape);
+                    if (batch.isEmpty()) {
+                        updateProgress(input.getCount(), total);
+                    }
+                });
+            }
+            ready.add(batch);
+            updateProgress(total, total);
+            return count;
+        }
+
+        // Копит фигуры в пачку и отдаёт её в очередь, когда она заполнится
+        private void add(ShapeModel shape) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            batch.add(shape);
+            count++;
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                ready.add(batch);
+                batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            }
+        }
+    }
+
+    private static boolean isBinary(File file) {
+        return file.getName().toLowerCase().endsWith(".vec");
+    }
+
+    private void attachBatches(Queue<List<ShapeModel>> ready, int limit) {
+        List<ShapeModel> pending = new ArrayList<>();
+        List<ShapeModel> batch;
+        while (pending.size() < limit && (batch = ready.poll()) != null) {
+            pending.addAll(batch);
+        }
+        if (!pending.isEmpty()) {
+            drawController.getDocument().addAll(pending);
+        }
+    }
+
+    // Считает прочитанные байты для индикатора прогресса
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
         }
 
-        svgContent.append("</svg>");
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
 
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(svgContent.toString());
+    // Заменяет содержимое документа загруженными фигурами
+    private void replaceDocument(List<ShapeModel> shapes) {
+        drawController.getDocument().beginEdit();
+        try {
+            drawController.clearCanvas();
+            drawController.getDocument().addAll(shapes);
+        } finally {
+            drawController.getDocument().endEdit();
         }
     }
 
-    // Метод для преобразования Color в строку HEX
-    private String toHexString(Color color) {
-        return String.format("#%02X%02X%02X",
-                (int) (color.getRed() * 255),
-                (int) (color.getGreen() * 255),
-                (int) (color.getBlue() * 255)
-        );
+    public void loadFromSvg(File file) throws IOException {
+        List<ShapeModel> shapes;
+        try (InputStream input = new FileInputStream(file)) {
+            shapes = svgReader.read(input);
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            // Потоковый разбор не справился с файлом (сущности из DTD, значение атрибута без числа
+            // в начале и т.п.) - читаем через DOM Batik, как до появления потокового разбора
+            System.out.println("Streaming SVG import failed, falling back to Batik: " + e.getMessage());
+            shapes = loadFromSvgWithBatik(file);
+        }
+        replaceDocument(shapes);
     }
 
-    public void loadFromSvg(File file) throws IOException, ParseException {
+    private List<ShapeModel> loadFromSvgWithBatik(File file) throws IOException {
         String parser = XMLResourceDescriptor.getXMLParserClassName();
         SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(parser);
         Document doc = factory.createDocument(file.toURI().toString());
 
-        drawController.getContentGroup().getChildren().clear();
+        List<ShapeModel> shapes = new ArrayList<>();
         NodeList elements = doc.getDocumentElement().getChildNodes();
 
         for (int i = 0; i < elements.getLength(); i++) {
-            processSvgNode(elements.item(i));
+            processSvgNode(elements.item(i), shapes);
         }
+        return shapes;
     }
 
-    private void processSvgNode(Node node) throws ParseException {
+    private void processSvgNode(Node node, List<ShapeModel> shapes) {
         if (node.getNodeType() == Node.ELEMENT_NODE) {
             Element element = (Element) node;
 
@@ -412,94 +428,55 @@ public class FileController {
                     : Color.web(strokeAttribute);
 
             String strokeWidthAttribute = element.getAttribute("stroke-width");
-            double strokeWidth = strokeWidthAttribute == null || strokeWidthAttribute.isEmpty() ? 0.0 : Double.parseDouble(strokeWidthAttribute);
+            // Без атрибута толщина обводки по SVG - 1
+            double strokeWidth = strokeWidthAttribute == null || strokeWidthAttribute.isEmpty() ? 1.0 : parseDouble(strokeWidthAttribute);
+
+            ShapeStyle style = new ShapeStyle(
+                    strokeColor != null ? Colors.toRgba(strokeColor) : ShapeStyle.TRANSPARENT,
+                    fillColor != null ? Colors.toRgba(fillColor) : ShapeStyle.TRANSPARENT,
+                    strokeWidth);
 
             switch (element.getTagName()) {
                 case "rect":
-                    Rectangle rect = new Rectangle(
+                    shapes.add(new RectangleModel(
                             parseDouble(element.getAttribute("x")),
                             parseDouble(element.getAttribute("y")),
                             parseDouble(element.getAttribute("width")),
-                            parseDouble(element.getAttribute("height"))
-                    );
-                    rect.setStroke(strokeColor);
-                    rect.setStrokeWidth(strokeWidth);
-                    rect.setFill(fillColor); // Устанавливаем заливку
-                    drawController.getContentGroup().getChildren().add(rect);
-                    resizingController.enableResizing(rect);
+                            parseDouble(element.getAttribute("height")),
+                            style
+                    ));
                     break;
 
                 case "ellipse":
-                    Ellipse ellipse = new Ellipse(
+                    shapes.add(new EllipseModel(
                             parseDouble(element.getAttribute("cx")),
                             parseDouble(element.getAttribute("cy")),
                             parseDouble(element.getAttribute("rx")),
-                            parseDouble(element.getAttribute("ry"))
-                    );
-                    ellipse.setStroke(strokeColor);
-                    ellipse.setStrokeWidth(strokeWidth);
-                    ellipse.setFill(fillColor);
-                    drawController.getContentGroup().getChildren().add(ellipse);
-                    resizingController.enableResizing(ellipse);
+                            parseDouble(element.getAttribute("ry")),
+                            style
+                    ));
                     break;
 
                 case "line":
-                    Line line = new Line(
+                    shapes.add(new LineModel(
                             parseDouble(element.getAttribute("x1")),
                             parseDouble(element.getAttribute("y1")),
                             parseDouble(element.getAttribute("x2")),
-                            parseDouble(element.getAttribute("y2"))
-                    );
-                    line.setStroke(strokeColor);
-                    line.setStrokeWidth(strokeWidth);
-                    drawController.getContentGroup().getChildren().add(line);
-                    resizingController.enableResizing(line);
+                            parseDouble(element.getAttribute("y2")),
+                            style
+                    ));
                     break;
 
                 case "path":
                     String pathData = element.getAttribute("d");
-                    Path path = new Path();
-                    path.getElements().addAll(PathElementParser.parseSvgPathData(pathData));
-                    path.setStroke(strokeColor);
-                    path.setStrokeWidth(strokeWidth);
-                    path.setFill(fillColor);
-                    drawController.getContentGroup().getChildren().add(path);
-                    resizingController.enableResizing(path);
+                    shapes.add(PathElementParser.parseSvgPath(pathData, style));
                     break;
 
                 case "polygon":
-                    String points = element.getAttribute("points");
-                    Polygon polygon = new Polygon();
-                    String[] pointsArray = points.split("\\s+");
-                    for (String point : pointsArray) {
-                        String[] coordinates = point.split(",");
-                        if (coordinates.length == 2) {
-                            polygon.getPoints().add(parseDouble(coordinates[0]));
-                            polygon.getPoints().add(parseDouble(coordinates[1]));
-                        }
-                    }
-                    polygon.setStroke(strokeColor);
-                    polygon.setStrokeWidth(strokeWidth);
-                    polygon.setFill(fillColor);
-                    drawController.getContentGroup().getChildren().add(polygon);
-                    resizingController.enableResizing(polygon);
+                    shapes.add(new PolygonModel(numbers.parsePoints(element.getAttribute("points")), style));
                     break;
                 case "polyline":
-                    String polylinePoints = element.getAttribute("points");
-                    Polyline polyline = new Polyline();
-                    String[] polylinePointsArray = polylinePoints.split("\\s+");
-                    for (String point : polylinePointsArray) {
-                        String[] coordinates = point.split(",");
-                        if (coordinates.length == 2) {
-                            polyline.getPoints().add(parseDouble(coordinates[0]));
-                            polyline.getPoints().add(parseDouble(coordinates[1]));
-                        }
-                    }
-                    polyline.setStroke(strokeColor);
-                    polyline.setStrokeWidth(strokeWidth);
-                    polyline.setFill(Color.TRANSPARENT);
-                    drawController.getContentGroup().getChildren().add(polyline);
-                    resizingController.enableResizing(polyline);
+                    shapes.add(new PolylineModel(numbers.parsePoints(element.getAttribute("points")), style));
                     break;
 
                 case "text":
@@ -508,25 +485,22 @@ public class FileController {
 
                     String textContent = element.getTextContent().trim();
 
-                    Text text = new Text(x, y, textContent);
-
                     String fontWeight = element.getAttribute("font-weight");
                     FontWeight weight = parseFontWeight(fontWeight);
 
                     double fontSize = parseDouble(element.getAttribute("font-size"));
-                    text.setFont(Font.font("Arial", weight, fontSize));
 
                     String fillAttribute = element.getAttribute("fill");
                     fillColor = "none".equals(fillAttribute) ? Color.BLACK : Color.web(fillAttribute);
-                    text.setFill(fillColor);
 
-                    drawController.getContentGroup().getChildren().add(text);
+                    shapes.add(new TextModel(x, y, textContent,
+                            new ShapeStyle(ShapeStyle.TRANSPARENT, Colors.toRgba(fillColor), 0, fontSize, weight.getWeight())));
                     break;
 
                 case "g": // Группа
                     NodeList children = element.getChildNodes();
                     for (int i = 0; i < children.getLength(); i++) {
-                        processSvgNode(children.item(i));
+                        processSvgNode(children.item(i), shapes);
                     }
                     break;
             }
@@ -552,35 +526,18 @@ public class FileController {
         };
     }
 
-    private double parseDouble(String value) throws NumberFormatException, ParseException {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.getDefault());
-        symbols.setDecimalSeparator('.');
-        symbols.setGroupingSeparator(',');
-
-        DecimalFormat decimalFormat = new DecimalFormat();
-        decimalFormat.setDecimalFormatSymbols(symbols);
-
-        value = value.trim().replace(',', '.');
-        return decimalFormat.parse(value).doubleValue();
+    // Числа SVG всегда с точкой, независимо от локали; единица после числа отбрасывается
+    private double parseDouble(String value) {
+        return numbers.parseNumber(value);
     }
 
-    public void saveToPNG(File file) throws IOException {
-        // Удаляем временные элементы (например, кружочки) перед созданием снимка
-        List<javafx.scene.Node> toRemove = new ArrayList<>();
-        for (javafx.scene.Node node : drawController.getContentGroup().getChildren()) {
-            if (node instanceof Circle) {
-                toRemove.add(node);
-            }
-        }
-        drawController.getContentGroup().getChildren().removeAll(toRemove);
-
-        // Создаем снимок
-        WritableImage snapshot = drawController.drawingArea.snapshot(new SnapshotParameters(), null);
-        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(snapshot, null);
-
-        // Восстанавливаем удаленные элементы
-        drawController.getContentGroup().getChildren().addAll(toRemove);
-
-        ImageIO.write(bufferedImage, "png", file);
+    private WritableImage renderPng() {
+        // Снимок только слоя документа: служебные узлы живут в отдельном слое, и сцену менять не нужно.
+        // Область снимка - в координатах холста, как и прежде, с учётом текущего масштаба.
+        // Кадр снимается в FX-потоке, кодирование PNG идёт в рабочем
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.WHITE);
+        parameters.setViewport(new Rectangle2D(0, 0, drawController.drawingArea.getWidth(), drawController.drawingArea.getHeight()));
+        return drawController.getContentGroup().snapshot(parameters, null);
     }
 }
\ No newline at end of file
@@ -1,26 +1,36 @@
 package org.example.controllers;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
 import javafx.scene.text.FontWeight;
 import javafx.stage.FileChooser;
 
 import javafx.stage.WindowEvent;
 import javafx.util.Duration;
 import org.example.enums.ToolMode;
+import org.example.io.EditJournal;
+import org.example.io.SvgExportProfile;
+import org.example.models.Colors;
+import org.example.models.Document;
+import org.example.models.ShapeModel;
+import org.example.models.ShapeStyle;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.ParseException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -65,6 +75,8 @@ public class MainController {
     @FXML private Pane drawingArea;
 
     @FXML private Label statusBar;
+    @FXML private ProgressBar loadProgressBar;
+    @FXML private Button cancelLoadButton;
 
     private ToolController toolController;
     private ColorController colorController;
@@ -73,6 +85,10 @@ public class MainController {
     private HistoryController historyController;
     private ResizingController resizingController;
 
+    private Task<Integer> currentLoad; // Идущая фоновая загрузка файла
+    private Task<Long> currentSave; // Идущее фоновое сохранение
+    private EditJournal editJournal; // Журнал правок для восстановления после сбоя
+    private SvgExportProfile minifiedSvgProfile = SvgExportProfile.MINIFIED; // Последние настройки SVG для веба
     private double scaleFactor = 1.0; // Текущий масштаб
     private static final double ZOOM_STEP = 0.1; // Шаг изменения масштаба
     private static final double MAX_SCALE = 5.0; // Максимальный масштаб
@@ -82,6 +98,8 @@ public class MainController {
     protected static FontWeight fontWeightValue = FontWeight.NORMAL;
 
     private final EventHandler<WindowEvent> closeEventHandler = event -> {
+        // Окно закрывает только exit(): он может дожидаться фонового сохранения
+        event.consume();
         if (DrawController.isModified()) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Exit");
@@ -98,18 +116,16 @@ public class MainController {
 
             if (result.isPresent()) {
                 if (result.get() == saveButton) {
-                    handleSaveFile();
-                    System.exit(0);
+                    // Выход - когда файл будет записан; если сохранение не началось, окно остаётся открытым
+                    if (handleSaveFile() != null) {
+                        exit();
+                    }
                 } else if (result.get() == discardButton) {
-                    System.exit(0);
-                } else if (result.get() == cancelButton) {
-                    event.consume();
+                    exit();
                 }
-            } else {
-                event.consume();
             }
         } else {
-            System.exit(0);
+            exit();
         }
     };
 
@@ -216,6 +232,8 @@ public class MainController {
         drawingArea.setClip(clip);
 
         drawController.resetModificationStatus();
+        // Окно восстановления показывается, когда главное окно уже открыто
+        Platform.runLater(this::startEditJournal);
 
         newFileMenuItem.setOnAction(event -> handleNewFile());
         openFileMenuItem.setOnAction(event -> handleOpenFile());
@@ -252,24 +270,21 @@ public class MainController {
         redoMenuItem.setOnAction(event -> redo());
         deleteMenuItem.setOnAction(event -> {
             statusBar.setText("Delete mode activated. Click on a shape to delete it. Right mouse button to deactivate.");
+            drawController.deactivateDrawingHandlers();
 
             drawingArea.setOnMouseClicked(mouseEvent -> {
-                drawController.deactivateDrawingHandlers();
-                Node pickedNode = mouseEvent.getPickResult().getIntersectedNode();
+                if (mouseEvent.getButton() != MouseButton.PRIMARY) return;
+                ShapeModel shape = drawController.pickShape(mouseEvent.getSceneX(), mouseEvent.getSceneY());
 
-                if (pickedNode instanceof Shape shape) {
-                    int index = drawController.contentGroup.getChildren().indexOf(shape);
+                if (shape != null) {
+                    Document document = drawController.getDocument();
+                    int index = document.remove(shape);
 
                     historyController.addAction(
-                            () -> { // Undo - восстановить фигуру
-                                drawController.contentGroup.getChildren().add(index, shape);
-                            },
-                            () -> { // Redo - удалить фигуру
-                                drawController.contentGroup.getChildren().remove(shape);
-                            }
+                            () -> document.add(index, shape), // Undo - восстановить фигуру
+                            () -> document.remove(shape)      // Redo - удалить фигуру
                     );
 
-                    drawController.contentGroup.getChildren().remove(shape);
                     statusBar.setText("Shape deleted.");
                 } else {
                     statusBar.setText("No shape selected for deletion.");
@@ -434,8 +449,9 @@ public class MainController {
 
         // Добавление фильтров для выбора расширений
         fileChooser.getExtensionFilters().addAll(
-                new FileChooser.ExtensionFilter("JSON Files", "*.json"),
+                new FileChooser.ExtensionFilter("JSON Files", "*.json", "*.json.gz"),
                 new FileChooser.ExtensionFilter("SVG Files", "*.svg"),
+                new FileChooser.ExtensionFilter("Vector Editor Binary Files", "*.vec"),
                 new FileChooser.ExtensionFilter("All Files", "*.*")
         );
 
@@ -444,8 +460,9 @@ public class MainController {
         if (file != null) {
             try {
                 String fileName = file.getName().toLowerCase();
-                if (fileName.endsWith(".json")) {
-                    fileController.loadFromJSON(file);
+                if (fileName.endsWith(".json") || fileName.endsWith(".json.gz") || fileName.endsWith(".vec")) {
+                    loadInBackground(file);
+                    return;
                 } else if (fileName.endsWith(".svg")) {
                     fileController.loadFromSvg(file);
                 } else {
@@ -453,45 +470,251 @@ public class MainController {
                 }
                 drawController.resetModificationStatus();
                 statusBar.setText("File loaded: " + file.getName());
-            } catch (IOException | ParseException | IllegalArgumentException e) {
+            } catch (IOException | IllegalArgumentException e) {
                 statusBar.setText("Failed to load file: " + e.getMessage());
             }
         }
     }
 
-    private void handleSaveFile() {
+    // Фоновая загрузка: окно остаётся отзывчивым, в строке статуса - прогресс и кнопка отмены
+    private void loadInBackground(File file) {
+        if (currentLoad != null && currentLoad.isRunning()) {
+            currentLoad.cancel();
+        }
+        Task<Integer> task = fileController.loadInBackground(file);
+        currentLoad = task;
+        statusBar.setText("Loading file: " + file.getName());
+        loadProgressBar.progressProperty().bind(task.progressProperty());
+        setLoadControlsVisible(true);
+        cancelLoadButton.setOnAction(event -> task.cancel());
+
+        task.setOnSucceeded(event -> {
+            setLoadControlsVisible(false);
+            drawController.resetModificationStatus();
+            statusBar.setText("File loaded: " + file.getName() + " (" + task.getValue() + " shapes)");
+        });
+        task.setOnCancelled(event -> {
+            setLoadControlsVisible(false);
+            statusBar.setText("Loading cancelled: " + file.getName());
+        });
+        task.setOnFailed(event -> {
+            setLoadControlsVisible(false);
+            statusBar.setText("Failed to load file: " + task.getException().getMessage());
+        });
+    }
+
+    private void setLoadControlsVisible(boolean visible) {
+        if (!visible) {
+            loadProgressBar.progressProperty().unbind();
+        }
+        loadProgressBar.setVisible(visible);
+        loadProgressBar.setManaged(visible);
+        cancelLoadButton.setVisible(visible);
+        cancelLoadButton.setManaged(visible);
+    }
+
+    // Возвращает запущенное сохранение или null, если файл не выбран или сохранение отклонено
+    private Task<Long> handleSaveFile() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save File");
 
         // Добавление фильтров для выбора расширений
+        FileChooser.ExtensionFilter minifiedSvgFilter = new FileChooser.ExtensionFilter("Minified SVG Files", "*.svg");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("JSON Files", "*.json"),
+                new FileChooser.ExtensionFilter("Compressed JSON Files", "*.json.gz"),
                 new FileChooser.ExtensionFilter("SVG Files", "*.svg"),
+                minifiedSvgFilter,
+                new FileChooser.ExtensionFilter("Vector Editor Binary Files", "*.vec"),
                 new FileChooser.ExtensionFilter("PNG Files", "*.png")
         );
 
         // Показ диалогового окна сохранения файла
         File file = fileChooser.showSaveDialog(drawingArea.getScene().getWindow());
         if (file != null) {
+            boolean minified = file.getName().toLowerCase().endsWith(".svg")
+                    && fileChooser.getSelectedExtensionFilter() == minifiedSvgFilter;
+            SvgExportProfile profile = SvgExportProfile.STANDARD;
+            if (minified) {
+                profile = askMinifiedSvgOptions();
+                if (profile == null) {
+                    return null;
+                }
+            }
+            return saveInBackground(file, profile);
+        }
+        return null;
+    }
+
+    // Точность координат и шаг сетки для SVG под веб; null, если пользователь отказался от сохранения
+    private SvgExportProfile askMinifiedSvgOptions() {
+        Spinner<Integer> precision = new Spinner<>(0, SvgExportProfile.MAX_PRECISION, minifiedSvgProfile.getPrecision());
+        Spinner<Double> grid = new Spinner<>(0.0, 100.0, minifiedSvgProfile.getGrid(), 0.5);
+
+        GridPane content = new GridPane();
+        content.setHgap(10);
+        content.setVgap(10);
+        content.addRow(0, new Label("Decimal places:"), precision);
+        content.addRow(1, new Label("Snap to grid (0 - off):"), grid);
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Minified SVG");
+        alert.setHeaderText("Export options");
+        alert.getDialogPane().setContent(content);
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isEmpty() || result.get() != ButtonType.OK) {
+            return null;
+        }
+        minifiedSvgProfile = SvgExportProfile.MINIFIED.withPrecision(precision.getValue()).withGrid(grid.getValue());
+        return minifiedSvgProfile;
+    }
+
+    // Фоновое сохранение: пока файл пишется, рисовать можно дальше; в строке статуса - прогресс и кнопка отмены
+    private Task<Long> saveInBackground(File file, SvgExportProfile profile) {
+        if (currentLoad != null && currentLoad.isRunning()) {
+            statusBar.setText("Wait until the file is loaded");
+            return null;
+        }
+        if (currentSave != null && isPending(currentSave)) {
+            statusBar.setText("The previous file is still being saved");
+            return null;
+        }
+        Task<Long> task;
+        try {
+            task = fileController.saveInBackground(file, profile);
+        } catch (IllegalArgumentException e) {
+            statusBar.setText("Failed to save file: " + e.getMessage());
+            return null;
+        }
+        currentSave = task;
+        // Документ сохраняется в том виде, в каком был сейчас; правки во время записи снова пометят его изменённым
+        drawController.resetModificationStatus();
+        statusBar.setText("Saving file: " + file.getName());
+        loadProgressBar.progressProperty().bind(task.progressProperty());
+        setLoadControlsVisible(true);
+        cancelLoadButton.setOnAction(event -> task.cancel());
+
+        task.setOnSucceeded(event -> {
+            setLoadControlsVisible(false);
+            String details = task.getMessage().isEmpty() ? "" : ", " + task.getMessage();
+            statusBar.setText("File saved: " + file.getName() + " (" + task.getValue() + " bytes" + details + ")");
+        });
+        task.setOnCancelled(event -> {
+            setLoadControlsVisible(false);
+            drawController.markAsModified();
+            statusBar.setText("Saving cancelled: " + file.getName());
+        });
+        task.setOnFailed(event -> {
+            setLoadControlsVisible(false);
+            drawController.markAsModified();
+            statusBar.setText("Failed to save file: " + task.getException().getMessage());
+        });
+        return task;
+    }
+
+    // Задача запущена, но итог ещё не доставлен в FX-поток. Сразу после запуска потока состояние
+    // ещё READY, поэтому isRunning здесь не подходит
+    private static boolean isPending(Worker<?> task) {
+        Worker.State state = task.getState();
+        return state == Worker.State.READY || state == Worker.State.SCHEDULED || state == Worker.State.RUNNING;
+    }
+
+    // Предлагает восстановить правки, оставшиеся от аварийно завершённых сеансов, и запускает журнал.
+    // Сеансы других запущенных окон не трогаются: их каталоги заблокированы
+    private void startEditJournal() {
+        Path root = EditJournal.defaultDirectory();
+        Document document = drawController.getDocument();
+        List<Path> abandoned = List.of();
+        try {
+            abandoned = EditJournal.findAbandonedSessions(root);
+        } catch (IOException e) {
+            statusBar.setText("Failed to look for unsaved changes: " + e.getMessage());
+        }
+        for (Path session : abandoned) {
             try {
-                String fileName = file.getName().toLowerCase();
-                if (fileName.endsWith(".json")) {
-                    fileController.saveToJSON(file);
-                } else if (fileName.endsWith(".svg")) {
-                    fileController.saveToSvg(file);
-                } else if (fileName.endsWith(".png")) {
-                    fileController.saveToPNG(file);
-                } else {
-                    throw new IllegalArgumentException("Unsupported file format: " + file.getName());
+                List<ShapeModel> recovered = EditJournal.recover(session);
+                if (!recovered.isEmpty()) {
+                    Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+                    alert.setTitle("Recovery");
+                    alert.setHeaderText("A previous session was not closed properly.");
+                    alert.setContentText("Restore " + recovered.size() + " shapes from the unsaved changes?");
+                    Optional<ButtonType> result = alert.showAndWait();
+                    if (result.isPresent() && result.get() == ButtonType.OK) {
+                        document.addAll(recovered);
+                        drawController.markAsModified();
+                        statusBar.setText("Unsaved changes restored");
+                    }
                 }
-                drawController.resetModificationStatus();
-                statusBar.setText("File saved: " + file.getName());
-            } catch (IOException | IllegalArgumentException e) {
-                statusBar.setText("Failed to save file: " + e.getMessage());
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
+            } catch (IOException e) {
+                statusBar.setText("Failed to restore unsaved changes: " + e.getMessage());
+            }
+        }
+        // Ошибки журнала приходят из его потока
+        editJournal = new EditJournal(document, root, message -> Platform.runLater(() -> statusBar.setText(message)));
+        try {
+            editJournal.start();
+        } catch (IOException e) {
+            editJournal = null;
+            statusBar.setText("Edit journal disabled: " + e.getMessage());
+            return;
+        }
+        // Восстановленные фигуры уже в первом снимке нового сеанса - старые каталоги больше не нужны
+        for (Path session : abandoned) {
+            try {
+                EditJournal.discard(session);
+            } catch (IOException e) {
+                System.out.println("Failed to remove recovery data " + session + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Штатный выход: журнал дописывается и удаляется, восстанавливать будет нечего.
+    // Если идёт фоновое сохранение, выход откладывается до его завершения
+    private void exit() {
+        if (currentSave != null && isPending(currentSave)) {
+            exitAfterSave(currentSave, DrawController.isModified());
+            return;
+        }
+        if (editJournal != null) {
+            try {
+                editJournal.close();
+            } catch (IOException e) {
+                // Строку статуса после выхода не увидеть - сообщаем, почему при следующем запуске будет восстановление
+                Alert alert = new Alert(Alert.AlertType.WARNING);
+                alert.setTitle("Exit");
+                alert.setHeaderText("Failed to remove recovery data.");
+                alert.setContentText(e.getMessage() + " Recovery will be offered on the next start.");
+                alert.showAndWait();
             }
         }
+        System.exit(0);
+    }
+
+    // FX-поток не ждёт записи: выход выполняется из обработчика завершения задачи. Журнал удаляется,
+    // только если файл записан и документ с тех пор не менялся (или изменения отвергнуты кнопкой Don't Save).
+    // При ошибке или отмене окно остаётся открытым, а журнал - на диске
+    private void exitAfterSave(Task<Long> save, boolean changesDiscarded) {
+        statusBar.setText("Exiting after the file is saved...");
+        save.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, event -> {
+            if (changesDiscarded || !DrawController.isModified()) {
+                exit();
+            } else {
+                showExitCancelled("The document was changed while it was being saved.");
+            }
+        });
+        save.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event ->
+                showExitCancelled("Failed to save file: " + save.getException().getMessage()));
+        save.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, event ->
+                showExitCancelled("Saving was cancelled."));
+    }
+
+    private void showExitCancelled(String reason) {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Exit");
+        alert.setHeaderText("Exit cancelled.");
+        alert.setContentText(reason + " Your changes are kept in the editor.");
+        alert.show();
     }
 
     @FXML
@@ -514,11 +737,11 @@ public class MainController {
                 if (result.get() == saveButton) {
                     handleSaveFile();
                 } else if (result.get() == discardButton) {
-                    System.exit(0);
+                    exit();
                 }
             }
         } else {
-            System.exit(0);
+            exit();
         }
     }
 
@@ -546,27 +769,30 @@ public class MainController {
         drawController.deactivateDrawingHandlers();
 
         drawingArea.setOnMousePressed(mouseEvent -> {
-            Node pickedNode = mouseEvent.getPickResult().getIntersectedNode();
-            if (pickedNode instanceof Shape shape) {
+            ShapeModel shape = drawController.pickShape(mouseEvent.getSceneX(), mouseEvent.getSceneY());
+            if (shape != null) {
+                ShapeStyle style = shape.getStyle();
 
                 if (mouseEvent.isPrimaryButtonDown()) {
                     // ЛКМ: выбираем цвет обводки
-                    Color strokeColor = (Color) shape.getStroke();
                     if (mouseEvent.isControlDown()) {
-                        shape.setStroke(colorPicker.getValue());
+                        shape.setStyle(style.withStrokeColor(Colors.toRgba(colorPicker.getValue())));
+                        drawController.getDocument().fireChanged(shape);
                     }
-                    else if (strokeColor != null) {
+                    else if (style.hasStroke()) {
+                        Color strokeColor = Colors.toColor(style.getStrokeColor());
                         colorPicker.setValue(strokeColor);
                         colorController.setCurrentColor(colorPicker.getValue());
                         statusBar.setText("Stroke color picked: " + colorToHex(strokeColor));
                     }
                 } else if (mouseEvent.isSecondaryButtonDown()) {
                     // ПКМ: выбираем цвет заливки
-                    Paint fillPaint = shape.getFill();
                     if (mouseEvent.isControlDown()) {
-                        shape.setFill(fillColorPicker.getValue());
+                        shape.setStyle(style.withFillColor(Colors.toRgba(fillColorPicker.getValue())));
+                        drawController.getDocument().fireChanged(shape);
                     }
-                    else if (fillPaint instanceof Color fillColor) {
+                    else {
+                        Color fillColor = Colors.toColor(style.getFillColor());
                         fillColorPicker.setValue(fillColor);
                         colorController.setFillColor(fillColor);
                         statusBar.setText("Fill color picked: " + colorToHex(fillColor));
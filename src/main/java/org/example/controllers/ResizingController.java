@@ -1,464 +1,273 @@
 package org.example.controllers;
 
-import javafx.collections.ObservableList;
+import javafx.geometry.Point2D;
 import javafx.scene.Cursor;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.*;
-import javafx.scene.text.Text;
-import org.example.enums.ToolMode;
+import org.example.models.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+
+// Маркеры изменения размеров. Маркеры существуют только у выделенных фигур:
+// создаются при выделении и возвращаются в небольшой пул при снятии выделения.
+// Своих обработчиков у маркеров и фигур нет: события мыши разбирает один фильтр на холсте
+
+public class ResizingController implements DocumentListener {
+    private static final String HANDLE_ID = "draggable-handle";
+    private static final int MAX_POOLED_HANDLES = 256;
 
-public class ResizingController {
     ToolController toolController;
     DrawController drawController;
     HistoryController historyController;
 
-    protected final Map<Shape, List<Circle>> shapeHandlesMap = new HashMap<>();
+    protected final Map<ShapeModel, List<Circle>> shapeHandlesMap = new LinkedHashMap<>();
+    private final Deque<Circle> handlePool = new ArrayDeque<>();
+
+    private ShapeModel draggedShape;
+    private int draggedHandle = -1;
+
+    // Привязка маркера к фигуре (по id документа) и номеру её точки.
+    // Создаётся один раз на маркер и переписывается при его повторном использовании
+    private static final class HandleBinding {
+        long shapeId;
+        int index;
+    }
 
     public void initialize(ToolController toolController, DrawController drawController, HistoryController historyController) {
         this.toolController = toolController;
         this.drawController = drawController;
         this.historyController = historyController;
+        drawController.getDocument().addListener(this);
+
+        drawController.drawingArea.addEventFilter(MouseEvent.MOUSE_PRESSED, this::onMousePressed);
+        drawController.drawingArea.addEventFilter(MouseEvent.MOUSE_DRAGGED, this::onMouseDragged);
+        drawController.drawingArea.addEventFilter(MouseEvent.MOUSE_RELEASED, this::onMouseReleased);
     }
 
-    protected void enableResizing(Shape shape) {
-        List<Circle> handles = new ArrayList<>();
+    public boolean isSelected(ShapeModel shape) {
+        return shapeHandlesMap.containsKey(shape);
+    }
 
-        if (shape instanceof Line) {
-            enableLineResizing((Line) shape, handles);
-        } else if (shape instanceof Ellipse) {
-            enableEllipseResizing((Ellipse) shape, handles);
-        } else if (shape instanceof Rectangle) {
-            enableRectangleResizing((Rectangle) shape, handles);
-        } else if (shape instanceof Path) {
-            enableCurveResizing((Path) shape, handles);
-        } else if (shape instanceof Polygon) {
-            enablePolygonResizing((Polygon) shape, handles);
-        } else if (shape instanceof Polyline) {
-            enablePolylineResizing((Polyline) shape, handles);
-        }
+    protected void select(ShapeModel shape) {
+        if (isSelected(shape) || !drawController.getDocument().contains(shape)) return;
 
+        double[] positions = handlePositions(shape);
+        List<Circle> handles = new ArrayList<>(positions.length / 2);
+        for (int i = 0; i < positions.length; i += 2) {
+            handles.add(acquireHandle(shape, i / 2, positions[i], positions[i + 1]));
+        }
         shapeHandlesMap.put(shape, handles);
-        shape.setOnMouseClicked(e -> {
-            if (toolController.getCurrentTool() == ToolMode.SELECT) {
-                List<Circle> circles = shapeHandlesMap.get(shape);
-                if (circles != null) {
-                    boolean visible = !circles.get(0).isVisible();
-                    toggleHandlesVisibility(visible, circles.toArray(new Circle[0]));
-                }
-            }
-        });
-        drawController.contentGroup.getChildren().addAll(handles);
+        drawController.overlayGroup.getChildren().addAll(handles);
+        drawController.getDocumentView().setEditing(shape, true);
     }
 
-    protected void enablePolylineResizing(Polyline shape, List<Circle> handles) {
-        ObservableList<Double> points = shape.getPoints();
-
-        for (int i = 0; i < points.size(); i += 2) {
-            double x = points.get(i);
-            double y = points.get(i + 1);
-
-            Circle handle = createHandle(x, y);
-
-            final int index = i;
-
-            handle.setOnMouseDragged(event -> {
-                double newX = event.getX();
-                double newY = event.getY();
-
-                points.set(index, newX);
-                points.set(index + 1, newY);
-
-                handle.setCenterX(newX);
-                handle.setCenterY(newY);
-            });
-
-            toggleHandlesVisibility(false, handle);
-            handles.add(handle);
+    protected void deselect(ShapeModel shape) {
+        List<Circle> handles = shapeHandlesMap.remove(shape);
+        if (handles != null) {
+            releaseHandles(handles);
+            drawController.getDocumentView().setEditing(shape, false);
         }
     }
 
-    private void enablePolygonResizing(Polygon shape, List<Circle> handles) {
-        ObservableList<Double> points = shape.getPoints();
-
-        for (int i = 0; i < points.size(); i += 2) {
-            double x = points.get(i);
-            double y = points.get(i + 1);
-
-            Circle handle = createHandle(x, y);
-
-            int index = i;
-            handle.setOnMouseDragged(e -> {
-                points.set(index, e.getX());
-                points.set(index + 1, e.getY());
-                handle.setCenterX(e.getX());
-                handle.setCenterY(e.getY());
-            });
-
-            toggleHandlesVisibility(false, handle);
-
-            handles.add(handle);
+    protected void clearSelection() {
+        List<Circle> handles = new ArrayList<>();
+        for (Map.Entry<ShapeModel, List<Circle>> entry : shapeHandlesMap.entrySet()) {
+            handles.addAll(entry.getValue());
+            drawController.getDocumentView().setEditing(entry.getKey(), false);
         }
+        shapeHandlesMap.clear();
+        releaseHandles(handles);
     }
 
-    private void enableCurveResizing(Path shape, List<Circle> handles) {
-        for (PathElement element : shape.getElements()) {
-            if (element instanceof MoveTo moveTo) {
-                Circle startHandle = createHandle(moveTo.getX(), moveTo.getY());
-
-                toggleHandlesVisibility(false, startHandle);
-
-                startHandle.setOnMouseDragged(e -> {
-                    moveTo.setX(e.getX());
-                    moveTo.setY(e.getY());
-                    startHandle.setCenterX(e.getX());
-                    startHandle.setCenterY(e.getY());
-                });
-
-                handles.add(startHandle);
-
-            } else if (element instanceof QuadCurveTo quadCurveTo) {
-                Circle controlHandle = createHandle(quadCurveTo.getControlX(), quadCurveTo.getControlY());
-                Circle endHandle = createHandle(quadCurveTo.getX(), quadCurveTo.getY());
-
-                toggleHandlesVisibility(false, controlHandle, endHandle);
-
-                controlHandle.setOnMouseDragged(e -> {
-                    quadCurveTo.setControlX(e.getX());
-                    quadCurveTo.setControlY(e.getY());
-                    controlHandle.setCenterX(e.getX());
-                    controlHandle.setCenterY(e.getY());
-                });
-
-                endHandle.setOnMouseDragged(e -> {
-                    quadCurveTo.setX(e.getX());
-                    quadCurveTo.setY(e.getY());
-                    endHandle.setCenterX(e.getX());
-                    endHandle.setCenterY(e.getY());
-                });
-
-                handles.add(controlHandle);
-            } else if (element instanceof LineTo lineTo) {
-                Circle endHandle = createHandle(lineTo.getX(), lineTo.getY());
-
-                toggleHandlesVisibility(false, endHandle);
-
-                endHandle.setOnMouseDragged(e -> {
-                    lineTo.setX(e.getX());
-                    lineTo.setY(e.getY());
-                    endHandle.setCenterX(e.getX());
-                    endHandle.setCenterY(e.getY());
-                });
-
-                handles.add(endHandle);
-            }
+    // Щелчок инструментом выбора по фигуре показывает или скрывает её маркеры
+    protected void toggleHandles(ShapeModel shape) {
+        if (isSelected(shape)) {
+            deselect(shape);
+        } else {
+            select(shape);
         }
     }
 
-    private void enableLineResizing(Line line, List<Circle> handles) {
-        Circle startHandle = createHandle(line.getStartX(), line.getStartY());
-        Circle endHandle = createHandle(line.getEndX(), line.getEndY());
-
-        toggleHandlesVisibility(false, startHandle, endHandle);
-
-        startHandle.setOnMouseDragged(e -> {
-            line.setStartX(e.getX());
-            line.setStartY(e.getY());
-            startHandle.setCenterX(e.getX());
-            startHandle.setCenterY(e.getY());
-        });
-
-        endHandle.setOnMouseDragged(e -> {
-            line.setEndX(e.getX());
-            line.setEndY(e.getY());
-            endHandle.setCenterX(e.getX());
-            endHandle.setCenterY(e.getY());
-        });
-
-        handles.add(startHandle);
-        handles.add(endHandle);
+    protected static boolean isHandle(Object target) {
+        return target instanceof Circle circle && HANDLE_ID.equals(circle.getId());
     }
 
-    private void enableEllipseResizing(Ellipse ellipse, List<Circle> handles) {
-        Circle widthHandle = createHandle(ellipse.getCenterX() + ellipse.getRadiusX(), ellipse.getCenterY());
-        Circle heightHandle = createHandle(ellipse.getCenterX(), ellipse.getCenterY() + ellipse.getRadiusY());
-
-        toggleHandlesVisibility(false, widthHandle, heightHandle);
-
-        widthHandle.setOnMouseDragged(e -> {
-            double newRadiusX = Math.abs(e.getX() - ellipse.getCenterX());
-            ellipse.setRadiusX(newRadiusX);
-            widthHandle.setCenterX(ellipse.getCenterX() + newRadiusX);
-        });
-
-        heightHandle.setOnMouseDragged(e -> {
-            double newRadiusY = Math.abs(e.getY() - ellipse.getCenterY());
-            ellipse.setRadiusY(newRadiusY);
-            heightHandle.setCenterY(ellipse.getCenterY() + newRadiusY);
-        });
-
-        handles.add(widthHandle);
-        handles.add(heightHandle);
+    // Положения маркеров фигуры: пары x, y в координатах документа
+    private double[] handlePositions(ShapeModel shape) {
+        if (shape instanceof RectangleModel rect) {
+            double right = rect.getX() + rect.getWidth();
+            double bottom = rect.getY() + rect.getHeight();
+            return new double[]{rect.getX(), rect.getY(), right, rect.getY(), rect.getX(), bottom, right, bottom};
+        } else if (shape instanceof EllipseModel ellipse) {
+            return new double[]{
+                    ellipse.getCenterX() + ellipse.getRadiusX(), ellipse.getCenterY(),
+                    ellipse.getCenterX(), ellipse.getCenterY() + ellipse.getRadiusY()
+            };
+        } else if (shape instanceof LineModel line) {
+            return new double[]{line.getStartX(), line.getStartY(), line.getEndX(), line.getEndY()};
+        } else if (shape instanceof PolyModel || shape instanceof PathModel) {
+            return shape.getCoordinates();
+        }
+        return new double[0];
     }
 
-    private void enableRectangleResizing(Rectangle rectangle, List<Circle> handles) {
-        javafx.scene.shape.Circle topLeftHandle = createHandle(rectangle.getX(), rectangle.getY());
-        javafx.scene.shape.Circle topRightHandle = createHandle(rectangle.getX() + rectangle.getWidth(), rectangle.getY());
-        javafx.scene.shape.Circle bottomLeftHandle = createHandle(rectangle.getX(), rectangle.getY() + rectangle.getHeight());
-        javafx.scene.shape.Circle bottomRightHandle = createHandle(rectangle.getX() + rectangle.getWidth(), rectangle.getY() + rectangle.getHeight());
-
-        toggleHandlesVisibility(false, topLeftHandle, topRightHandle, bottomLeftHandle, bottomRightHandle);
-
-        topLeftHandle.setOnMouseDragged(e -> {
-            double newWidth = rectangle.getX() + rectangle.getWidth() - e.getX();
-            double newHeight = rectangle.getY() + rectangle.getHeight() - e.getY();
-
-            if (newWidth > 0 && newHeight > 0) {
-                rectangle.setX(e.getX());
-                rectangle.setY(e.getY());
-                rectangle.setWidth(newWidth);
-                rectangle.setHeight(newHeight);
+    // Перетаскивание маркера с номером index в точку (x, y)
+    private void moveHandle(ShapeModel shape, int index, double x, double y) {
+        if (shape instanceof RectangleModel rect) {
+            double left = rect.getX(), top = rect.getY();
+            double right = left + rect.getWidth(), bottom = top + rect.getHeight();
+            switch (index) {
+                case 0 -> { left = x; top = y; }       // левый верхний
+                case 1 -> { right = x; top = y; }      // правый верхний
+                case 2 -> { left = x; bottom = y; }    // левый нижний
+                default -> { right = x; bottom = y; }  // правый нижний
             }
-
-            updateRectangleHandles(rectangle, topLeftHandle, topRightHandle, bottomLeftHandle, bottomRightHandle);
-        });
-
-        topRightHandle.setOnMouseDragged(e -> {
-            double newWidth = e.getX() - rectangle.getX();
-            double newHeight = rectangle.getY() + rectangle.getHeight() - e.getY();
-
-            if (newWidth > 0 && newHeight > 0) {
-                rectangle.setY(e.getY());
-                rectangle.setWidth(newWidth);
-                rectangle.setHeight(newHeight);
+            if (right - left <= 0 || bottom - top <= 0) return;
+            rect.setBounds(left, top, right - left, bottom - top);
+        } else if (shape instanceof EllipseModel ellipse) {
+            if (index == 0) {
+                ellipse.setRadiusX(Math.abs(x - ellipse.getCenterX()));
+            } else {
+                ellipse.setRadiusY(Math.abs(y - ellipse.getCenterY()));
             }
-
-            updateRectangleHandles(rectangle, topLeftHandle, topRightHandle, bottomLeftHandle, bottomRightHandle);
-        });
-
-        bottomLeftHandle.setOnMouseDragged(e -> {
-            double newWidth = rectangle.getX() + rectangle.getWidth() - e.getX();
-            double newHeight = e.getY() - rectangle.getY();
-
-            if (newWidth > 0 && newHeight > 0) {
-                rectangle.setX(e.getX());
-                rectangle.setWidth(newWidth);
-                rectangle.setHeight(newHeight);
+        } else if (shape instanceof LineModel line) {
+            if (index == 0) {
+                line.setStart(x, y);
+            } else {
+                line.setEnd(x, y);
             }
+        } else if (shape instanceof PolyModel poly) {
+            poly.setPoint(index, x, y);
+        } else if (shape instanceof PathModel path) {
+            path.setPoint(index, x, y);
+        } else {
+            return;
+        }
+        drawController.getDocument().fireChanged(shape);
+    }
 
-            updateRectangleHandles(rectangle, topLeftHandle, topRightHandle, bottomLeftHandle, bottomRightHandle);
-        });
-
-        bottomRightHandle.setOnMouseDragged(e -> {
-            double newWidth = e.getX() - rectangle.getX();
-            double newHeight = e.getY() - rectangle.getY();
+    private Circle acquireHandle(ShapeModel shape, int index, double x, double y) {
+        Circle handle = handlePool.poll();
+        if (handle == null) {
+            handle = createHandle();
+        }
+        handle.setCenterX(x);
+        handle.setCenterY(y);
+        handle.setRadius(1.5 * drawController.currentStrokeWidth);
+        HandleBinding binding = (HandleBinding) handle.getUserData();
+        binding.shapeId = shape.getId();
+        binding.index = index;
+        return handle;
+    }
 
-            if (newWidth > 0 && newHeight > 0) {
-                rectangle.setWidth(newWidth);
-                rectangle.setHeight(newHeight);
+    private void releaseHandles(List<Circle> handles) {
+        drawController.overlayGroup.getChildren().removeAll(new HashSet<>(handles));
+        for (Circle handle : handles) {
+            ((HandleBinding) handle.getUserData()).shapeId = 0;
+            if (handlePool.size() < MAX_POOLED_HANDLES) {
+                handlePool.push(handle);
             }
-
-            updateRectangleHandles(rectangle, topLeftHandle, topRightHandle, bottomLeftHandle, bottomRightHandle);
-        });
-
-        handles.add(topLeftHandle);
-        handles.add(topRightHandle);
-        handles.add(bottomLeftHandle);
-        handles.add(bottomRightHandle);
+        }
     }
 
-    private Circle createHandle(double x, double y) {
-        javafx.scene.shape.Circle handle = new javafx.scene.shape.Circle(x, y, 1.5*drawController.currentStrokeWidth);
+    private Circle createHandle() {
+        Circle handle = new Circle();
         handle.setFill(Color.RED);
         handle.setStroke(Color.BLACK);
         handle.setStrokeWidth(1);
         handle.setCursor(Cursor.HAND);
-        handle.setId("draggable-handle");
+        handle.setId(HANDLE_ID);
+        handle.setUserData(new HandleBinding());
         return handle;
     }
 
-    private void updateRectangleHandles(Rectangle rectangle, javafx.scene.shape.Circle topLeftHandle,
-                                        javafx.scene.shape.Circle topRightHandle,
-                                        javafx.scene.shape.Circle bottomLeftHandle,
-                                        javafx.scene.shape.Circle bottomRightHandle) {
-        topLeftHandle.setCenterX(rectangle.getX());
-        topLeftHandle.setCenterY(rectangle.getY());
-
-        topRightHandle.setCenterX(rectangle.getX() + rectangle.getWidth());
-        topRightHandle.setCenterY(rectangle.getY());
-
-        bottomLeftHandle.setCenterX(rectangle.getX());
-        bottomLeftHandle.setCenterY(rectangle.getY() + rectangle.getHeight());
+    // Нажатие на маркер начинает его перетаскивание; событие поглощается, чтобы инструменты рисования его не получили.
+    // Перетаскивание - одна длинная правка документа: журнал правок запишет фигуру один раз, при отпускании
+    private void onMousePressed(MouseEvent event) {
+        if (draggedHandle < 0 && event.isPrimaryButtonDown() && isHandle(event.getTarget())
+                && ((Circle) event.getTarget()).getUserData() instanceof HandleBinding binding) {
+            ShapeModel shape = drawController.getDocument().getById(binding.shapeId);
+            if (shape != null) {
+                draggedShape = shape;
+                draggedHandle = binding.index;
+                drawController.getDocument().beginEdit();
+                event.consume();
+            }
+        }
+    }
 
-        bottomRightHandle.setCenterX(rectangle.getX() + rectangle.getWidth());
-        bottomRightHandle.setCenterY(rectangle.getY() + rectangle.getHeight());
+    private void onMouseDragged(MouseEvent event) {
+        if (draggedShape != null) {
+            Point2D local = drawController.contentGroup.sceneToLocal(event.getSceneX(), event.getSceneY());
+            moveHandle(draggedShape, draggedHandle, local.getX(), local.getY());
+            drawController.markAsModified();
+            event.consume();
+        }
     }
 
-    protected void toggleHandlesVisibility(boolean visible, Circle... handles) {
-        for (Circle handle : handles) {
-            handle.setVisible(visible);
+    // draggedHandle сбрасывается только здесь: фигуру могли удалить посреди перетаскивания, а правку надо завершить
+    private void onMouseReleased(MouseEvent event) {
+        if (draggedHandle >= 0) {
+            draggedShape = null;
+            draggedHandle = -1;
+            drawController.getDocument().endEdit();
+            event.consume();
         }
     }
 
-    protected void removeHandlesFromShape(Shape shape) {
+    // Маркеры следуют за фигурой при любых её изменениях, в том числе при отмене и повторе
+    private void refreshHandles(ShapeModel shape) {
         List<Circle> handles = shapeHandlesMap.get(shape);
-        if (handles != null) {
-            drawController.contentGroup.getChildren().removeAll(handles);
-            shapeHandlesMap.remove(shape);
+        if (handles == null) return;
+
+        double[] positions = handlePositions(shape);
+        if (positions.length / 2 != handles.size()) {
+            deselect(shape);
+            select(shape);
+            return;
+        }
+        for (int i = 0; i < handles.size(); i++) {
+            handles.get(i).setCenterX(positions[i * 2]);
+            handles.get(i).setCenterY(positions[i * 2 + 1]);
         }
     }
 
-    protected void updateShapePosition(Shape shape) {
-        double deltaX = shape.getTranslateX();
-        double deltaY = shape.getTranslateY();
-
-        double[] oldCoordinates = getShapeCoordinates(shape);
-
-        if (shape instanceof Rectangle rect) {
-            rect.setX(rect.getX() + deltaX);
-            rect.setY(rect.getY() + deltaY);
-        } else if (shape instanceof Ellipse ellipse) {
-            ellipse.setCenterX(ellipse.getCenterX() + deltaX);
-            ellipse.setCenterY(ellipse.getCenterY() + deltaY);
-        } else if (shape instanceof Line line) {
-            line.setStartX(line.getStartX() + deltaX);
-            line.setStartY(line.getStartY() + deltaY);
-            line.setEndX(line.getEndX() + deltaX);
-            line.setEndY(line.getEndY() + deltaY);
-        } else if (shape instanceof Polygon polygon) {
-            ObservableList<Double> points = polygon.getPoints();
-            for (int i = 0; i < points.size(); i += 2) {
-                points.set(i, points.get(i) + deltaX);       // X
-                points.set(i + 1, points.get(i + 1) + deltaY); // Y
-            }
-        } else if (shape instanceof Polyline polyline) {
-            ObservableList<Double> points = polyline.getPoints();
-            for (int i = 0; i < points.size(); i += 2) {
-                points.set(i, points.get(i) + deltaX);       // X
-                points.set(i + 1, points.get(i + 1) + deltaY); // Y
-            }
-        } else if (shape instanceof Path path) {
-            for (PathElement element : path.getElements()) {
-                if (element instanceof MoveTo moveTo) {
-                    moveTo.setX(moveTo.getX() + deltaX);
-                    moveTo.setY(moveTo.getY() + deltaY);
-                } else if (element instanceof LineTo lineTo) {
-                    lineTo.setX(lineTo.getX() + deltaX);
-                    lineTo.setY(lineTo.getY() + deltaY);
-                } else if (element instanceof QuadCurveTo quadCurveTo) {
-                    quadCurveTo.setControlX(quadCurveTo.getControlX() + deltaX);
-                    quadCurveTo.setControlY(quadCurveTo.getControlY() + deltaY);
-                    quadCurveTo.setX(quadCurveTo.getX() + deltaX);
-                    quadCurveTo.setY(quadCurveTo.getY() + deltaY);
-                }
+    @Override
+    public void shapesRemoved(List<ShapeModel> shapes) {
+        for (ShapeModel shape : shapes) {
+            deselect(shape);
+            if (shape == draggedShape) {
+                draggedShape = null;
             }
-        } else if (shape instanceof Text text) {
-            text.setX(text.getX() + deltaX);
-            text.setY(text.getY() + deltaY);
         }
-
-        shape.setTranslateX(0);
-        shape.setTranslateY(0);
-
-        double[] newCoordinates = getShapeCoordinates(shape);
-        historyController.addAction(
-                () -> {
-                    setShapeCoordinates(shape, oldCoordinates);
-                    removeHandlesFromShape(shape);
-                    enableResizing(shape);
-                },
-                () -> {
-                    setShapeCoordinates(shape, newCoordinates);
-                    removeHandlesFromShape(shape);
-                    enableResizing(shape);
-                }
-        );
     }
 
-    private double[] getShapeCoordinates(Shape shape) {
-        if (shape instanceof Rectangle rect) {
-            return new double[]{rect.getX(), rect.getY()};
-        } else if (shape instanceof Ellipse ellipse) {
-            return new double[]{ellipse.getCenterX(), ellipse.getCenterY()};
-        } else if (shape instanceof Line line) {
-            return new double[]{line.getStartX(), line.getStartY(), line.getEndX(), line.getEndY()};
-        } else if (shape instanceof Polygon polygon) {
-            double[] points = new double[polygon.getPoints().size()];
-            for (int i = 0; i < points.length; i++) {
-                points[i] = polygon.getPoints().get(i);
-            }
-            return points;
-        } else if (shape instanceof Path path) {
-            List<Double> coords = new ArrayList<>();
-            for (PathElement element : path.getElements()) {
-                if (element instanceof MoveTo moveTo) {
-                    coords.add(moveTo.getX());
-                    coords.add(moveTo.getY());
-                } else if (element instanceof LineTo lineTo) {
-                    coords.add(lineTo.getX());
-                    coords.add(lineTo.getY());
-                } else if (element instanceof QuadCurveTo quadCurveTo) {
-                    coords.add(quadCurveTo.getControlX());
-                    coords.add(quadCurveTo.getControlY());
-                    coords.add(quadCurveTo.getX());
-                    coords.add(quadCurveTo.getY());
-                }
-            }
-            return coords.stream().mapToDouble(Double::doubleValue).toArray();
-        } else if (shape instanceof Polyline polyline) {
-            double[] points = new double[polyline.getPoints().size()];
-            for (int i = 0; i < points.length; i++) {
-                points[i] = polyline.getPoints().get(i);
-            }
-            return points;
+    @Override
+    public void shapesChanged(List<ShapeModel> shapes) {
+        if (shapeHandlesMap.isEmpty()) return;
+        for (ShapeModel shape : shapes) {
+            refreshHandles(shape);
         }
-        return new double[0];
     }
 
-    private void setShapeCoordinates(Shape shape, double[] coords) {
-        if (shape instanceof Rectangle rect) {
-            rect.setX(coords[0]);
-            rect.setY(coords[1]);
-        } else if (shape instanceof Ellipse ellipse) {
-            ellipse.setCenterX(coords[0]);
-            ellipse.setCenterY(coords[1]);
-        } else if (shape instanceof Line line) {
-            line.setStartX(coords[0]);
-            line.setStartY(coords[1]);
-            line.setEndX(coords[2]);
-            line.setEndY(coords[3]);
-        } else if (shape instanceof Polygon polygon) {
-            ObservableList<Double> points = polygon.getPoints();
-            points.clear();
-            for (double coord : coords) {
-                points.add(coord);
-            }
-        } else if (shape instanceof Path path) {
-            int index = 0;
-            for (PathElement element : path.getElements()) {
-                if (element instanceof MoveTo moveTo) {
-                    moveTo.setX(coords[index++]);
-                    moveTo.setY(coords[index++]);
-                } else if (element instanceof LineTo lineTo) {
-                    lineTo.setX(coords[index++]);
-                    lineTo.setY(coords[index++]);
-                } else if (element instanceof QuadCurveTo quadCurveTo) {
-                    quadCurveTo.setControlX(coords[index++]);
-                    quadCurveTo.setControlY(coords[index++]);
-                    quadCurveTo.setX(coords[index++]);
-                    quadCurveTo.setY(coords[index++]);
-                }
-            }
-        } else if (shape instanceof Polyline polyline) {
-            ObservableList<Double> points = polyline.getPoints();
-            points.clear();
-            for (double coord : coords) {
-                points.add(coord);
-            }
-        }
+    @Override
+    public void documentCleared() {
+        clearSelection();
+        draggedShape = null;
+    }
+
+    // Завершение перетаскивания выделения: смещение переносится в геометрию одним проходом,
+    // а в историю попадает одна запись, хранящая только смещение
+    protected void commitTranslation(List<ShapeModel> shapes, double dx, double dy) {
+        if (shapes.isEmpty() || (dx == 0 && dy == 0)) return;
+
+        Document document = drawController.getDocument();
+        List<ShapeModel> moved = List.copyOf(shapes);
+        document.translate(moved, dx, dy);
+        historyController.addAction(
+                () -> document.translate(moved, -dx, -dy),
+                () -> document.translate(moved, dx, dy)
+        );
     }
-}
\ No newline at end of file
+}
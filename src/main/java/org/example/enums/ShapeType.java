@@ -0,0 +1,11 @@
+package org.example.enums;
+
+public enum ShapeType {
+    RECTANGLE,
+    ELLIPSE,
+    LINE,
+    PATH,
+    POLYGON,
+    POLYLINE,
+    TEXT
+}
@@ -0,0 +1,406 @@
+package org.example.io;
+
+import org.example.models.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ObjLongConsumer;
+
+// Собственный двоичный формат документа (.vec). Чанки по одному читаются позиционным FileChannel.read
+// в переиспользуемый буфер в куче, числа берутся из него как есть, без токенизации и промежуточных строк.
+// Файл не отображается в память: отображение живёт до сборки мусора, и на Windows файл нельзя было бы
+// сразу сохранить поверх. Порядок байт - little-endian.
+//
+//   заголовок   "VECD", u16 версия, u16 0, i64 смещение оглавления, i32 число чанков, i32 число фигур
+//   чанки       i32 число стилей, i32 число фигур, стили, фигуры - до CHUNK_SIZE фигур подряд
+//   оглавление  по чанку в порядке документа: i64 смещение, i32 длина, i32 число фигур
+//   стили       по 32 байта: i32 обводка, i32 заливка, f64 толщина, f64 размер шрифта, i32 насыщенность, i32 0
+//   фигуры      u8 тип, 3 байта 0, i32 индекс стиля (в таблице своего чанка), затем данные типа:
+//               прямоугольник, эллипс, линия - 4 x f64;
+//               многоугольник, ломаная - i32 число координат, i32 0, координаты f64;
+//               путь - i32 число команд, i32 число координат, байты команд до кратного 8, координаты f64;
+//               текст - 2 x f64, i32 длина UTF-8, i32 0, байты до кратного 8
+//
+// Чанки независимы и лежат в файле в любом порядке - порядок задаёт оглавление. Поэтому
+// ChunkedDocumentWriter может дописать в конец только изменённые чанки и новое оглавление.
+// Версия 1 - заголовок "VECD", u16 1, u16 0, i32 число стилей, i32 число фигур, i32 0 и один чанк
+// без счётчиков - по-прежнему читается.
+// Все записи выровнены по 8 байт, поэтому массивы координат копируются из файла одним блоком
+public class BinaryDocumentCodec {
+    public static final int VERSION = 2;
+    static final int CHUNK_SIZE = 1024;
+    static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 'V' | 'E' << 8 | 'C' << 16 | 'D' << 24;
+    private static final int V1_HEADER_SIZE = 20;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int STYLE_SIZE = 32;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private static final byte RECTANGLE = 1, ELLIPSE = 2, LINE = 3, POLYGON = 4, POLYLINE = 5, PATH = 6, TEXT = 7;
+
+    // Полная запись документа; сохранение с перезаписью только изменённых чанков - в ChunkedDocumentWriter
+    public void write(List<ShapeModel> shapes, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = newOutput(channel, HEADER_SIZE);
+            List<Chunk> chunks = new ArrayList<>();
+            for (int from = 0; from < shapes.size(); from += CHUNK_SIZE) {
+                chunks.add(writeChunk(out, HEADER_SIZE, shapes.subList(from, Math.min(shapes.size(), from + CHUNK_SIZE))));
+            }
+            out.flush();
+            commit(channel, HEADER_SIZE + out.position(), chunks, shapes.size());
+        }
+    }
+
+    // Место чанка в файле
+    static final class Chunk {
+        final long offset;
+        final int length;
+        final int shapeCount;
+
+        Chunk(long offset, int length, int shapeCount) {
+            this.offset = offset;
+            this.length = length;
+            this.shapeCount = shapeCount;
+        }
+    }
+
+    // Вывод в канал, начиная с позиции position
+    static Output newOutput(FileChannel channel, long position) throws IOException {
+        channel.position(position);
+        return new Output(channel, ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE));
+    }
+
+    // base - позиция канала, с которой начат вывод out
+    static Chunk writeChunk(Output out, long base, List<ShapeModel> shapes) throws IOException {
+        long offset = base + out.position();
+        Map<ShapeStyle, Integer> styles = new LinkedHashMap<>();
+        for (ShapeModel shape : shapes) {
+            styles.putIfAbsent(shape.getStyle(), styles.size());
+        }
+        out.require(8);
+        out.buffer.putInt(styles.size()).putInt(shapes.size());
+        for (ShapeStyle style : styles.keySet()) {
+            writeStyle(out, style);
+        }
+        for (ShapeModel shape : shapes) {
+            writeShape(out, shape, styles.get(shape.getStyle()));
+        }
+        return new Chunk(offset, (int) (base + out.position() - offset), shapes.size());
+    }
+
+    // Оглавление пишется после чанков и сбрасывается на диск раньше заголовка, который на него указывает.
+    // Заголовок занимает начало первого сектора файла, и до его записи действует прежнее оглавление
+    static void commit(FileChannel channel, long indexOffset, List<Chunk> chunks, int shapeCount) throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(chunks.size() * INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (Chunk chunk : chunks) {
+            index.putLong(chunk.offset).putInt(chunk.length).putInt(chunk.shapeCount);
+        }
+        writeFully(channel, index.flip(), indexOffset);
+        channel.force(false);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                .putLong(indexOffset).putInt(chunks.size()).putInt(shapeCount);
+        writeFully(channel, header.flip(), 0);
+        channel.force(false);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    static void writeStyle(Output out, ShapeStyle style) throws IOException {
+        out.require(STYLE_SIZE);
+        out.buffer.putInt(style.getStrokeColor()).putInt(style.getFillColor())
+                .putDouble(style.getStrokeWidth()).putDouble(style.getFontSize())
+                .putInt(style.getFontWeight()).putInt(0);
+    }
+
+    static ShapeStyle readStyle(ByteBuffer in) {
+        ShapeStyle style = new ShapeStyle(in.getInt(), in.getInt(), in.getDouble(), in.getDouble(), in.getInt());
+        in.getInt();
+        return style;
+    }
+
+    // Запись фигуры в формате .vec; общий с журналом правок
+    static void writeShape(Output out, ShapeModel shape, int style) throws IOException {
+        if (shape instanceof RectangleModel rectangle) {
+            out.record(RECTANGLE, style, 32);
+            out.buffer.putDouble(rectangle.getX()).putDouble(rectangle.getY())
+                    .putDouble(rectangle.getWidth()).putDouble(rectangle.getHeight());
+        } else if (shape instanceof EllipseModel ellipse) {
+            out.record(ELLIPSE, style, 32);
+            out.buffer.putDouble(ellipse.getCenterX()).putDouble(ellipse.getCenterY())
+                    .putDouble(ellipse.getRadiusX()).putDouble(ellipse.getRadiusY());
+        } else if (shape instanceof LineModel line) {
+            out.record(LINE, style, 32);
+            out.buffer.putDouble(line.getStartX()).putDouble(line.getStartY())
+                    .putDouble(line.getEndX()).putDouble(line.getEndY());
+        } else if (shape instanceof PolyModel poly) {
+            PointArray points = poly.getPoints();
+            out.record(shape instanceof PolygonModel ? POLYGON : POLYLINE, style, 8);
+            out.buffer.putInt(points.size()).putInt(0);
+            out.doubles(points);
+        } else if (shape instanceof PathModel path) {
+            int commands = path.getCommandCount();
+            out.record(PATH, style, 8);
+            out.buffer.putInt(commands).putInt(path.getCoords().size());
+            for (int i = 0; i < commands; i++) {
+                out.require(1);
+                out.buffer.put((byte) path.getCommand(i));
+            }
+            out.pad(commands);
+            out.doubles(path.getCoords());
+        } else if (shape instanceof TextModel text) {
+            byte[] bytes = text.getText().getBytes(StandardCharsets.UTF_8);
+            out.record(TEXT, style, 24);
+            out.buffer.putDouble(text.getX()).putDouble(text.getY()).putInt(bytes.length).putInt(0);
+            out.bytes(bytes);
+            out.pad(bytes.length);
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape.getType());
+        }
+    }
+
+    public List<ShapeModel> read(Path file) throws IOException {
+        List<ShapeModel> shapes = new ArrayList<>();
+        read(file, (shape, offset) -> shapes.add(shape));
+        return shapes;
+    }
+
+    // consumer получает фигуру и смещение конца её записи - для индикатора прогресса
+    public void read(Path file, ObjLongConsumer<ShapeModel> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Document is too large: " + size + " bytes");
+            }
+            ByteBuffer header = readAt(channel, 0, (int) Math.min(size, HEADER_SIZE), null);
+            try {
+                if (header.remaining() < V1_HEADER_SIZE || header.getInt() != MAGIC) {
+                    throw new IOException("Not a vector editor binary document");
+                }
+                int version = header.getShort() & 0xFFFF;
+                if (version > VERSION) {
+                    throw new IOException("Unsupported document version " + version + ", expected at most " + VERSION);
+                }
+                header.getShort();
+                if (version == 1) {
+                    // Версия 1 - один чанк на весь файл
+                    ByteBuffer buffer = readAt(channel, 0, (int) size, null);
+                    buffer.position(header.position());
+                    int styleCount = count(buffer.getInt(), buffer, STYLE_SIZE);
+                    int shapeCount = count(buffer.getInt(), buffer, 8);
+                    buffer.getInt();
+                    readShapes(buffer, styleCount, shapeCount, consumer, 0);
+                } else {
+                    readChunks(channel, (int) size, header, consumer);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Corrupted binary document", e);
+            }
+        }
+    }
+
+    // Чанки читаются в порядке оглавления; смещение для прогресса - сколько байт чанков уже прочитано
+    private static void readChunks(FileChannel channel, int size, ByteBuffer header,
+                                   ObjLongConsumer<ShapeModel> consumer) throws IOException {
+        long indexOffset = header.getLong();
+        int chunkCount = header.getInt();
+        header.getInt();
+        if (indexOffset < HEADER_SIZE || indexOffset > size || chunkCount < 0
+                || (long) chunkCount * INDEX_ENTRY_SIZE > size - indexOffset) {
+            throw new IOException("Corrupted binary document: chunk index is out of range");
+        }
+        ByteBuffer index = readAt(channel, indexOffset, chunkCount * INDEX_ENTRY_SIZE, null);
+        ByteBuffer chunk = null;
+        long consumed = HEADER_SIZE;
+        for (int i = 0; i < chunkCount; i++) {
+            long offset = index.getLong();
+            int length = index.getInt();
+            int shapeCount = index.getInt();
+            if (offset < HEADER_SIZE || length < 8 || offset + length > indexOffset) {
+                throw new IOException("Corrupted binary document: chunk " + i + " is out of range");
+            }
+            // Фигуры копируют свои данные из буфера, поэтому он переиспользуется для следующего чанка
+            chunk = readAt(channel, offset, length, chunk);
+            int styleCount = count(chunk.getInt(), chunk, STYLE_SIZE);
+            if (chunk.getInt() != shapeCount) {
+                throw new IOException("Corrupted binary document: chunk " + i + " does not match the index");
+            }
+            readShapes(chunk, styleCount, count(shapeCount, chunk, 8), consumer, consumed);
+            consumed += length;
+        }
+    }
+
+    // length байт файла с позиции position; buffer переиспользуется, если в нём хватает места
+    private static ByteBuffer readAt(FileChannel channel, long position, int length, ByteBuffer buffer) throws IOException {
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer == null ? 0 : buffer.capacity() * 2))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Corrupted binary document: unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void readShapes(ByteBuffer in, int styleCount, int shapeCount,
+                                   ObjLongConsumer<ShapeModel> consumer, long base) throws IOException {
+        ShapeStyle[] styles = new ShapeStyle[styleCount];
+        for (int i = 0; i < styleCount; i++) {
+            styles[i] = readStyle(in);
+        }
+        for (int i = 0; i < shapeCount; i++) {
+            consumer.accept(readShape(in, styles), base + in.position());
+        }
+    }
+
+    static ShapeModel readShape(ByteBuffer in, ShapeStyle[] styles) throws IOException {
+        byte type = in.get();
+        in.position(in.position() + 3);
+        int styleIndex = in.getInt();
+        if (styleIndex < 0 || styleIndex >= styles.length) {
+            throw new IOException("Style index " + styleIndex + " is out of range");
+        }
+        ShapeStyle style = styles[styleIndex];
+        return switch (type) {
+            case RECTANGLE -> new RectangleModel(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), style);
+            case ELLIPSE -> new EllipseModel(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), style);
+            case LINE -> new LineModel(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), style);
+            case POLYGON, POLYLINE -> {
+                int coordCount = count(in.getInt(), in, 8);
+                in.getInt();
+                double[] coords = doubles(in, coordCount);
+                yield type == POLYGON ? new PolygonModel(coords, style) : new PolylineModel(coords, style);
+            }
+            case PATH -> {
+                int commandCount = count(in.getInt(), in, 1);
+                int coordCount = count(in.getInt(), in, 8);
+                byte[] commands = new byte[commandCount];
+                in.get(commands);
+                skipPadding(in, commandCount);
+                int needed = 0;
+                for (byte command : commands) {
+                    if ("MLQCZ".indexOf(command) < 0) {
+                        throw new IOException("Unknown path command: " + (char) command);
+                    }
+                    needed += PathModel.coordCount((char) command);
+                }
+                if (needed != coordCount) {
+                    throw new IOException("Path has " + coordCount + " coordinates, expected " + needed);
+                }
+                yield new PathModel(commands, commandCount, doubles(in, coordCount), coordCount, style);
+            }
+            case TEXT -> {
+                double x = in.getDouble(), y = in.getDouble();
+                int length = count(in.getInt(), in, 1);
+                in.getInt();
+                byte[] bytes = new byte[length];
+                in.get(bytes);
+                skipPadding(in, length);
+                yield new TextModel(x, y, new String(bytes, StandardCharsets.UTF_8), style);
+            }
+            default -> throw new IOException("Unknown shape type " + type);
+        };
+    }
+
+    // Массив координат одним блочным копированием из буфера чанка
+    private static double[] doubles(ByteBuffer in, int count) {
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + count * 8);
+        return values;
+    }
+
+    private static void skipPadding(ByteBuffer in, int length) {
+        in.position(in.position() + padding(length));
+    }
+
+    private static int padding(int length) {
+        return -length & 7;
+    }
+
+    // Число элементов из файла не может требовать больше байт, чем в файле осталось
+    static int count(int value, ByteBuffer in, int elementSize) throws IOException {
+        if (value < 0 || (long) value * elementSize > in.remaining()) {
+            throw new IOException("Corrupted binary document: count " + value + " at offset " + in.position());
+        }
+        return value;
+    }
+
+    // Запись через один буфер; массивы длиннее буфера уходят в канал частями
+    static class Output {
+        final ByteBuffer buffer;
+        final WritableByteChannel channel;
+        private long flushed;
+
+        Output(WritableByteChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void record(byte type, int style, int payload) throws IOException {
+            require(8 + payload);
+            buffer.put(type).put((byte) 0).put((byte) 0).put((byte) 0).putInt(style);
+        }
+
+        void doubles(PointArray values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                require(8);
+                buffer.putDouble(values.get(i));
+            }
+        }
+
+        void bytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                require(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        void pad(int length) throws IOException {
+            int padding = padding(length);
+            require(padding);
+            for (int i = 0; i < padding; i++) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        // Сколько байт выведено с начала, включая ещё не сброшенные в канал
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            flushed += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
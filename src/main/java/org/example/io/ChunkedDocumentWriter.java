@@ -0,0 +1,247 @@
+package org.example.io;
+
+import org.example.models.ShapeModel;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+// Сохранение .vec, при котором переписываются только изменённые чанки. Writer помнит, какие фигуры
+// (id и версия) лежат в каждом чанке файла, записанного им в последний раз. При следующем сохранении
+// в тот же файл чанк, фигуры которого идут в документе подряд и не изменились, остаётся на месте;
+// остальные фигуры пишутся новыми чанками в конец файла, за ними - новое оглавление, и последним
+// переписывается заголовок. Работа пропорциональна изменениям, а не размеру документа.
+// Когда мёртвые байты (старые чанки и оглавления) перевешивают живые или чанков становится слишком
+// много, файл переписывается целиком через AtomicFiles
+public class ChunkedDocumentWriter {
+    // Сколько чанков сверх двукратного минимума допускается, прежде чем файл будет переписан целиком
+    private static final int MAX_EXTRA_CHUNKS = 16;
+
+    private volatile Layout saved;
+
+    // Чанк файла и фигуры, записанные в него
+    private static final class SavedChunk {
+        final BinaryDocumentCodec.Chunk location;
+        final long[] ids;
+        final long[] versions;
+
+        SavedChunk(BinaryDocumentCodec.Chunk location, long[] ids, long[] versions) {
+            this.location = location;
+            this.ids = ids;
+            this.versions = versions;
+        }
+
+        boolean matches(List<ShapeModel> shapes, int from) {
+            if (from + ids.length > shapes.size()) {
+                return false;
+            }
+            for (int i = 0; i < ids.length; i++) {
+                ShapeModel shape = shapes.get(from + i);
+                if (shape.getId() != ids[i] || shape.getVersion() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Последний записанный файл; размер и время изменения выдают правку файла кем-то ещё
+    private static final class Layout {
+        final Path file;
+        final long size;
+        final FileTime modified;
+        final List<SavedChunk> chunks;
+
+        Layout(Path file, long size, FileTime modified, List<SavedChunk> chunks) {
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+            this.chunks = chunks;
+        }
+    }
+
+    // Часть документа в порядке оглавления: оставшийся на месте чанк или копии фигур для нового чанка
+    private static final class Part {
+        final SavedChunk reused;
+        final List<ShapeModel> shapes;
+        final long[] ids;
+        final long[] versions;
+
+        Part(SavedChunk reused) {
+            this(reused, null, null, null);
+        }
+
+        Part(SavedChunk reused, List<ShapeModel> shapes, long[] ids, long[] versions) {
+            this.reused = reused;
+            this.shapes = shapes;
+            this.ids = ids;
+            this.versions = versions;
+        }
+    }
+
+    // Что и куда будет записано. Составляется в FX-потоке, пишется в рабочем
+    public static final class Plan {
+        private final Path file;
+        private final boolean full;
+        private final List<Part> parts;
+        private final int shapeCount;
+        private final int rewrittenCount;
+
+        private Plan(Path file, boolean full, List<Part> parts, int shapeCount, int rewrittenCount) {
+            this.file = file;
+            this.full = full;
+            this.parts = parts;
+            this.shapeCount = shapeCount;
+            this.rewrittenCount = rewrittenCount;
+        }
+
+        public boolean isFull() {
+            return full;
+        }
+
+        public int getShapeCount() {
+            return shapeCount;
+        }
+
+        public int getRewrittenShapeCount() {
+            return rewrittenCount;
+        }
+    }
+
+    // Сравнивает документ с последним сохранением и копирует только изменённые фигуры: фигуры
+    // изменяемы, а запись идёт в другом потоке. Стоимость - проход по id и версиям без кодирования
+    public Plan plan(Path file, List<ShapeModel> shapes) {
+        file = file.toAbsolutePath().normalize();
+        Layout layout = reusableLayout(file);
+        // Отрезки документа: SavedChunk или int[]{from, to} для новых чанков
+        List<Object> segments = new ArrayList<>();
+        if (layout != null) {
+            Map<Long, SavedChunk> starts = new HashMap<>();
+            for (SavedChunk chunk : layout.chunks) {
+                starts.put(chunk.ids[0], chunk);
+            }
+            long live = 0;
+            int chunkCount = 0;
+            int runStart = 0;
+            int i = 0;
+            while (i < shapes.size()) {
+                SavedChunk chunk = starts.get(shapes.get(i).getId());
+                if (chunk != null && chunk.matches(shapes, i)) {
+                    chunkCount += addRun(segments, runStart, i);
+                    segments.add(chunk);
+                    chunkCount++;
+                    live += chunk.location.length;
+                    i += chunk.ids.length;
+                    runStart = i;
+                } else {
+                    i++;
+                }
+            }
+            chunkCount += addRun(segments, runStart, shapes.size());
+
+            long dead = layout.size - BinaryDocumentCodec.HEADER_SIZE - live;
+            int chunkLimit = shapes.size() / BinaryDocumentCodec.CHUNK_SIZE * 2 + MAX_EXTRA_CHUNKS;
+            if (dead <= live && chunkCount <= chunkLimit) {
+                return toPlan(file, false, segments, shapes);
+            }
+            segments.clear();
+        }
+        addRun(segments, 0, shapes.size());
+        return toPlan(file, true, segments, shapes);
+    }
+
+    // Отрезок подряд идущих изменённых фигур, разбитый на чанки; возвращает число чанков
+    private static int addRun(List<Object> segments, int from, int to) {
+        int count = 0;
+        for (int start = from; start < to; start += BinaryDocumentCodec.CHUNK_SIZE) {
+            segments.add(new int[]{start, Math.min(to, start + BinaryDocumentCodec.CHUNK_SIZE)});
+            count++;
+        }
+        return count;
+    }
+
+    private static Plan toPlan(Path file, boolean full, List<Object> segments, List<ShapeModel> shapes) {
+        List<Part> parts = new ArrayList<>(segments.size());
+        int rewritten = 0;
+        for (Object segment : segments) {
+            if (segment instanceof SavedChunk chunk) {
+                parts.add(new Part(chunk));
+                continue;
+            }
+            int[] range = (int[]) segment;
+            int length = range[1] - range[0];
+            List<ShapeModel> copies = new ArrayList<>(length);
+            long[] ids = new long[length];
+            long[] versions = new long[length];
+            for (int i = 0; i < length; i++) {
+                ShapeModel shape = shapes.get(range[0] + i);
+                copies.add(shape.copy());
+                ids[i] = shape.getId();
+                versions[i] = shape.getVersion();
+            }
+            parts.add(new Part(null, copies, ids, versions));
+            rewritten += length;
+        }
+        return new Plan(file, full, parts, shapes.size(), rewritten);
+    }
+
+    private Layout reusableLayout(Path file) {
+        Layout layout = saved;
+        if (layout == null || !layout.file.equals(file)) {
+            return null;
+        }
+        try {
+            if (Files.size(file) == layout.size && Files.getLastModifiedTime(file).equals(layout.modified)) {
+                return layout;
+            }
+        } catch (IOException e) {
+            // Файла больше нет - пишется заново
+        }
+        return null;
+    }
+
+    // progress получает число записанных фигур из getRewrittenShapeCount. Возвращает размер файла
+    public long write(Plan plan, IntConsumer progress) throws IOException {
+        // Пока запись не завершена, прежняя раскладка файла недостоверна
+        saved = null;
+        List<SavedChunk> chunks = new ArrayList<>(plan.parts.size());
+        if (plan.full) {
+            AtomicFiles.write(plan.file, temp -> {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    writeParts(channel, BinaryDocumentCodec.HEADER_SIZE, plan, chunks, progress);
+                }
+            });
+        } else {
+            try (FileChannel channel = FileChannel.open(plan.file, StandardOpenOption.WRITE)) {
+                writeParts(channel, channel.size(), plan, chunks, progress);
+            }
+        }
+        long size = Files.size(plan.file);
+        saved = new Layout(plan.file, size, Files.getLastModifiedTime(plan.file), chunks);
+        return size;
+    }
+
+    private static void writeParts(FileChannel channel, long position, Plan plan, List<SavedChunk> chunks,
+                                   IntConsumer progress) throws IOException {
+        BinaryDocumentCodec.Output out = BinaryDocumentCodec.newOutput(channel, position);
+        List<BinaryDocumentCodec.Chunk> index = new ArrayList<>(plan.parts.size());
+        int written = 0;
+        for (Part part : plan.parts) {
+            SavedChunk chunk = part.reused;
+            if (chunk == null) {
+                chunk = new SavedChunk(BinaryDocumentCodec.writeChunk(out, position, part.shapes), part.ids, part.versions);
+                written += part.shapes.size();
+                progress.accept(written);
+            }
+            chunks.add(chunk);
+            index.add(chunk.location);
+        }
+        out.flush();
+        BinaryDocumentCodec.commit(channel, position + out.position(), index, plan.shapeCount);
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.io;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Потоковое сжатие документов gzip. Сохранять сжатым или нет, решает имя файла (.gz),
+// а при чтении сжатие определяется по сигнатуре - расширение может и не совпадать
+public final class Compression {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Compression() {
+    }
+
+    public static boolean hasCompressedName(File file) {
+        return file.getName().toLowerCase().endsWith(".gz");
+    }
+
+    // Самый быстрый уровень: документы очень однообразны и сжимаются хорошо и так, а уровень
+    // по умолчанию тратит на тех же данных в несколько раз больше процессора ради трети объёма
+    public static OutputStream compress(OutputStream out) throws IOException {
+        return new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    // Распаковывает поток на лету, если он начинается с сигнатуры gzip, иначе возвращает его как есть
+    public static InputStream decompressIfNeeded(InputStream input) throws IOException {
+        InputStream in = input.markSupported() ? input : new BufferedInputStream(input, BUFFER_SIZE);
+        in.mark(2);
+        int b1 = in.read(), b2 = in.read();
+        in.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    public static boolean isCompressed(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+}
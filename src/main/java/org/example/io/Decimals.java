@@ -0,0 +1,91 @@
+package org.example.io;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Запись чисел с фиксированным числом знаков после точки без String.format:
+// лишние нули отбрасываются, целые пишутся без ".0"
+final class Decimals {
+    static final int MAX_PRECISION = 9;
+    // Вместо числа знаков: без округления, в кратчайшей записи, которая читается обратно в тот же double
+    static final int LOSSLESS = -1;
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private Decimals() {
+    }
+
+    static String toString(double value, int precision) {
+        StringBuilder sb = new StringBuilder(12);
+        append(sb, value, precision);
+        return sb.toString();
+    }
+
+    static void append(StringBuilder sb, double value, int precision) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        if (precision == LOSSLESS) {
+            appendLossless(sb, value);
+            return;
+        }
+        long scale = POW10[precision];
+        double scaled = value * scale;
+        if (Math.abs(scaled) >= 1e15) {
+            // За пределами точности long - медленный, но точный путь
+            sb.append(BigDecimal.valueOf(value).setScale(precision, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString());
+            return;
+        }
+        appendUnits(sb, Math.round(scaled), precision);
+    }
+
+    // Запись Double.toString без промежуточной строки; у целых отбрасывается ".0"
+    private static void appendLossless(StringBuilder sb, double value) {
+        sb.append(value);
+        int length = sb.length();
+        if (sb.charAt(length - 2) == '.' && sb.charAt(length - 1) == '0') {
+            sb.setLength(length - 2);
+        }
+    }
+
+    // Запись числа, заданного целым количеством единиц последнего знака: 1234 при precision 2 - это "12.34"
+    static void appendUnits(StringBuilder sb, long units, int precision) {
+        long scale = POW10[precision];
+        if (units < 0) {
+            sb.append('-');
+            units = -units;
+        }
+        sb.append(units / scale);
+        long fraction = units % scale;
+        if (fraction == 0) {
+            return;
+        }
+        sb.append('.');
+        int digits = precision;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (long p = POW10[digits - 1]; p > fraction; p /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    static long scale(int precision) {
+        return POW10[precision];
+    }
+
+    // Точность для записи без округления: LOSSLESS или от 0 до MAX_PRECISION
+    static int checkPrecisionOrLossless(int precision) {
+        return precision == LOSSLESS ? precision : checkPrecision(precision);
+    }
+
+    static int checkPrecision(int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 0 and " + MAX_PRECISION + ": " + precision);
+        }
+        return precision;
+    }
+}
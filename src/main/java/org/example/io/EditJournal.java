@@ -0,0 +1,600 @@
+package org.example.io;
+
+import org.example.models.Document;
+import org.example.models.DocumentListener;
+import org.example.models.ShapeModel;
+import org.example.models.ShapeStyle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Журнал правок для восстановления после сбоя. Каждое событие документа - а через них проходят
+// и действия истории undo/redo - кодируется в FX-потоке в короткую двоичную запись, которая
+// дописывается в конец файла журнала отдельным потоком. Поток журнала воспроизводит записи над своей
+// копией документа; когда журнал разрастается, он же кодирует из неё полный снимок, а журнал начинается
+// заново. FX-поток документ целиком не кодирует. Длинная правка (Document.beginEdit/endEdit) пишется
+// в конце: перетаскивание - одной записью CHANGE, а если фигуры добавлялись или удалялись (загрузка
+// файла) - новым снимком. Восстановление - снимок плюс журнал.
+//
+// Каждый запущенный редактор пишет в свой подкаталог session-* общего каталога восстановления
+// и держит в нём блокировку файла lock, пока журнал открыт. Восстановление предлагается только
+// для подкаталогов, чью блокировку никто не держит: их владелец завершился, не удалив журнал.
+//
+//   файлы       snapshot.vecj и journal.vecj: "VECJ", u16 версия, u16 0, i64 поколение, затем записи
+//   запись      i32 длина данных, i32 CRC32C данных, данные:
+//               u8 вид, 3 байта 0, i32 число фигур, затем по виду
+//               ADD - i32 позиция, i32 0, по фигуре: i64 id, стиль, запись фигуры в формате .vec
+//               REMOVE - по фигуре i64 id; CHANGE - как ADD, но без позиции; CLEAR - ничего
+//
+// Журнал действителен только при том же поколении, что и снимок. Снимок заменяется через
+// AtomicFiles, поэтому сбой в любой момент оставляет согласованную пару файлов. Записи журнала
+// не сбрасываются на диск по отдельности: падение программы они переживают, отключение питания - не всегда
+public class EditJournal implements DocumentListener {
+    private static final int MAGIC = 'V' | 'E' << 8 | 'C' << 16 | 'J' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final byte ADD = 1, REMOVE = 2, CHANGE = 3, CLEAR = 4;
+    // Журнал сжимается, когда становится больше этого размера и больше снимка
+    private static final long MIN_COMPACTION_SIZE = 8 << 20;
+
+    private static final String SNAPSHOT_FILE = "snapshot.vecj";
+    private static final String JOURNAL_FILE = "journal.vecj";
+    private static final String LOCK_FILE = "lock";
+    private static final String SESSION_PREFIX = "session-";
+
+    private final Document document;
+    private final Path root;
+    // Каталог сеанса и файлы в нём появляются в start
+    private Path directory;
+    private Path snapshotFile;
+    private Path journalFile;
+    // Пока канал открыт, блокировка держится и другие экземпляры не считают сеанс брошенным
+    private FileChannel lockChannel;
+    // Получает текст ошибки в потоке журнала
+    private final Consumer<String> onError;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Кодирование записей - только в FX-потоке
+    private final RecordEncoder records = new RecordEncoder();
+    private long journalSize;
+    private volatile long compactionSize = MIN_COMPACTION_SIZE;
+    // Длинная правка: изменённые фигуры копятся до её конца, добавление или удаление требует нового снимка
+    private boolean editing;
+    private boolean structural;
+    private final Set<ShapeModel> pendingChanges = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Состояние файлов и копия документа - только в потоке журнала
+    private final RecordEncoder snapshots = new RecordEncoder();
+    private final Replay shadow = new Replay();
+    private FileChannel channel;
+    private long generation;
+    private volatile boolean failed;
+
+    // root - общий каталог восстановления, свой подкаталог журнал создаёт в нём сам
+    public EditJournal(Document document, Path root, Consumer<String> onError) {
+        this.document = document;
+        this.root = root;
+        this.onError = onError;
+    }
+
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".vector-editor", "recovery");
+    }
+
+    // Создаёт и блокирует каталог сеанса, подписывается на документ и пишет первый снимок.
+    // В FX-потоке фигуры только копируются (обычно документ при запуске пуст), кодирует и пишет
+    // снимок поток журнала
+    public void start() throws IOException {
+        Files.createDirectories(root);
+        Path session = Files.createTempDirectory(root, SESSION_PREFIX);
+        FileChannel lock = FileChannel.open(session.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (lock.tryLock() == null) {
+                throw new IOException("Recovery directory is locked: " + session);
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        directory = session;
+        snapshotFile = session.resolve(SNAPSHOT_FILE);
+        journalFile = session.resolve(JOURNAL_FILE);
+        lockChannel = lock;
+        document.addListener(this);
+        snapshot();
+    }
+
+    @Override
+    public void shapesAdded(int fromIndex, List<ShapeModel> shapes) {
+        if (editing) {
+            structural = true;
+            return;
+        }
+        records.begin(ADD, shapes.size());
+        records.putPosition(fromIndex);
+        records.putShapes(shapes);
+        append();
+    }
+
+    @Override
+    public void shapesRemoved(List<ShapeModel> shapes) {
+        if (editing) {
+            structural = true;
+            return;
+        }
+        records.begin(REMOVE, shapes.size());
+        for (ShapeModel shape : shapes) {
+            records.putId(shape.getId());
+        }
+        append();
+    }
+
+    @Override
+    public void shapesChanged(List<ShapeModel> shapes) {
+        if (editing) {
+            pendingChanges.addAll(shapes);
+            return;
+        }
+        records.begin(CHANGE, shapes.size());
+        records.putShapes(shapes);
+        append();
+    }
+
+    @Override
+    public void documentCleared() {
+        if (editing) {
+            structural = true;
+            return;
+        }
+        records.begin(CLEAR, 0);
+        append();
+    }
+
+    @Override
+    public void editStarted() {
+        editing = true;
+    }
+
+    // Фигуры кодируются один раз, в конечном состоянии
+    @Override
+    public void editFinished() {
+        if (!editing) {
+            return;
+        }
+        editing = false;
+        if (structural) {
+            snapshot();
+        } else if (!pendingChanges.isEmpty()) {
+            shapesChanged(new ArrayList<>(pendingChanges));
+        }
+        structural = false;
+        pendingChanges.clear();
+    }
+
+    // Дописывает оставшиеся записи и удаляет файлы: после штатного выхода восстанавливать нечего.
+    // Исключение - если файлы удалить не удалось: тогда при следующем запуске будет предложено восстановление
+    public void close() throws IOException {
+        document.removeListener(this);
+        Future<?> removal = writer.submit(() -> {
+            closeChannel();
+            if (directory != null) {
+                // Блокировка снимается только после удаления данных: иначе их увидят как брошенные
+                Files.deleteIfExists(journalFile);
+                Files.deleteIfExists(snapshotFile);
+                lockChannel.close();
+                discard(directory);
+            }
+            return null;
+        });
+        writer.shutdown();
+        try {
+            removal.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out while removing recovery data");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    // Новое поколение: в FX-потоке фигуры только копируются, кодирует и пишет снимок поток журнала
+    private void snapshot() {
+        List<ShapeModel> shapes = document.getShapes();
+        long[] ids = new long[shapes.size()];
+        List<ShapeModel> copies = new ArrayList<>(shapes.size());
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = shapes.get(i).getId();
+            copies.add(shapes.get(i).copy());
+        }
+        journalSize = 0;
+        writer.execute(() -> {
+            shadow.reset(ids, copies);
+            writeSnapshot();
+        });
+    }
+
+    // Отдаёт запись потоку журнала; когда журнал разрастается, просит его же записать новый снимок
+    private void append() {
+        byte[] record = records.finish();
+        if (failed) {
+            return;
+        }
+        writer.execute(() -> write(record));
+        journalSize += record.length;
+        if (journalSize > compactionSize) {
+            journalSize = 0;
+            writer.execute(this::writeSnapshot);
+        }
+    }
+
+    private void write(byte[] record) {
+        if (failed || channel == null) {
+            return;
+        }
+        if (!shadow.next(ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN))) {
+            fail(new IOException("Journal record does not match the document"));
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Снимок - одна запись ADD со всей копией документа
+    private void writeSnapshot() {
+        if (failed) {
+            return;
+        }
+        snapshots.begin(ADD, shadow.entries.size());
+        snapshots.putPosition(0);
+        for (Replay.Entry entry : shadow.entries) {
+            snapshots.putShape(entry.id, entry.shape);
+        }
+        byte[] record = snapshots.finish();
+        compactionSize = Math.max(MIN_COMPACTION_SIZE, record.length);
+        try {
+            long next = generation + 1;
+            AtomicFiles.write(snapshotFile, temp -> {
+                try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = header(next);
+                    while (buffer.hasRemaining()) {
+                        file.write(buffer);
+                    }
+                    buffer = ByteBuffer.wrap(record);
+                    while (buffer.hasRemaining()) {
+                        file.write(buffer);
+                    }
+                }
+            });
+            // Старый журнал с прежним поколением больше не нужен - он уже вошёл в снимок
+            closeChannel();
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer buffer = header(next);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            generation = next;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        onError.accept("Edit journal disabled: " + e.getMessage());
+        try {
+            closeChannel();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Кодирование записей в память. У FX-потока и потока журнала по своему экземпляру
+    private static final class RecordEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        private final BinaryDocumentCodec.Output out =
+                new BinaryDocumentCodec.Output(Channels.newChannel(bytes), ByteBuffer.allocate(4096));
+        private final CRC32C crc = new CRC32C();
+
+        void begin(byte kind, int count) {
+            bytes.reset();
+            out.buffer.clear();
+            // Место под длину и контрольную сумму заполняется в finish
+            out.buffer.putLong(0).put(kind).put((byte) 0).put((byte) 0).put((byte) 0).putInt(count);
+        }
+
+        void putPosition(int fromIndex) {
+            require(8);
+            out.buffer.putInt(fromIndex).putInt(0);
+        }
+
+        void putId(long id) {
+            require(8);
+            out.buffer.putLong(id);
+        }
+
+        void putShapes(List<ShapeModel> shapes) {
+            for (ShapeModel shape : shapes) {
+                putShape(shape.getId(), shape);
+            }
+        }
+
+        void putShape(long id, ShapeModel shape) {
+            putId(id);
+            try {
+                BinaryDocumentCodec.writeStyle(out, shape.getStyle());
+                BinaryDocumentCodec.writeShape(out, shape, 0);
+            } catch (IOException e) {
+                // Запись идёт в память
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void require(int count) {
+            try {
+                out.require(count);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        byte[] finish() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            byte[] record = bytes.toByteArray();
+            crc.reset();
+            crc.update(record, 8, record.length - 8);
+            ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN).putInt(record.length - 8).putInt((int) crc.getValue());
+            return record;
+        }
+    }
+
+    private static ByteBuffer header(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0).putLong(generation);
+        return header.flip();
+    }
+
+    public static boolean hasRecoveryData(Path directory) {
+        return Files.isRegularFile(directory.resolve(SNAPSHOT_FILE));
+    }
+
+    // Каталоги сеансов в root, владельцы которых завершились, не удалив данные восстановления.
+    // Сеансы запущенных экземпляров (их блокировка занята) не возвращаются
+    public static List<Path> findAbandonedSessions(Path root) throws IOException {
+        List<Path> sessions = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return sessions;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, SESSION_PREFIX + "*")) {
+            for (Path session : stream) {
+                if (hasRecoveryData(session) && !isLocked(session)) {
+                    sessions.add(session);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    // Файл блокировки не создаётся: его нет, только пока владелец создаёт каталог или уже удаляет его
+    private static boolean isLocked(Path session) throws IOException {
+        try (FileChannel channel = FileChannel.open(session.resolve(LOCK_FILE), StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (OverlappingFileLockException e) {
+            // Блокировку держит этот же процесс
+            return true;
+        }
+    }
+
+    // Удаляет каталог сеанса вместе с оставшимися в нём файлами
+    public static void discard(Path session) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(session)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.deleteIfExists(session);
+    }
+
+    // Документ на момент последней целой записи журнала. Оборванная или повреждённая запись
+    // в конце журнала - обычное следствие сбоя, на ней воспроизведение останавливается
+    public static List<ShapeModel> recover(Path directory) throws IOException {
+        Replay replay = new Replay();
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(SNAPSHOT_FILE)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long generation = readHeader(snapshot);
+        if (generation < 0 || !replay.next(snapshot)) {
+            throw new IOException("Corrupted recovery snapshot");
+        }
+
+        Path journal = directory.resolve(JOURNAL_FILE);
+        if (Files.isRegularFile(journal)) {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journal)).order(ByteOrder.LITTLE_ENDIAN);
+            if (readHeader(records) == generation) {
+                int count = 0;
+                while (records.hasRemaining() && replay.next(records)) {
+                    count++;
+                }
+                if (records.hasRemaining()) {
+                    System.out.println("Edit journal is truncated after " + count + " records");
+                }
+            }
+        }
+        return replay.shapes();
+    }
+
+    // Поколение из заголовка или -1, если файл не журнала
+    private static long readHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || (in.getShort() & 0xFFFF) > VERSION) {
+            return -1;
+        }
+        in.getShort();
+        return in.getLong();
+    }
+
+    // Воспроизведение записей над списком фигур; фигуры находятся по id, который им дал документ
+    private static class Replay {
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<Long, Entry> byId = new HashMap<>();
+        private final CRC32C crc = new CRC32C();
+
+        private static class Entry {
+            final long id;
+            ShapeModel shape;
+            boolean removed;
+
+            Entry(long id, ShapeModel shape) {
+                this.id = id;
+                this.shape = shape;
+            }
+        }
+
+        void reset(long[] ids, List<ShapeModel> shapes) {
+            entries.clear();
+            byId.clear();
+            for (int i = 0; i < ids.length; i++) {
+                Entry entry = new Entry(ids[i], shapes.get(i));
+                entries.add(entry);
+                byId.put(ids[i], entry);
+            }
+        }
+
+        // false, если запись оборвана, повреждена или не согласуется с документом
+        boolean next(ByteBuffer in) {
+            if (in.remaining() < 8) {
+                return false;
+            }
+            int start = in.position();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 8 || length > in.remaining()) {
+                in.position(start);
+                return false;
+            }
+            ByteBuffer record = in.slice(in.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                in.position(start);
+                return false;
+            }
+            try {
+                apply(record);
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+                in.position(start);
+                return false;
+            }
+            in.position(in.position() + length);
+            return true;
+        }
+
+        private void apply(ByteBuffer in) throws IOException {
+            byte kind = in.get();
+            in.position(in.position() + 3);
+            int count = BinaryDocumentCodec.count(in.getInt(), in, 8);
+            switch (kind) {
+                case ADD -> {
+                    int fromIndex = in.getInt();
+                    in.getInt();
+                    if (fromIndex < 0 || fromIndex > entries.size()) {
+                        throw new IOException("Insert position " + fromIndex + " is out of range");
+                    }
+                    List<Entry> added = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        long id = in.getLong();
+                        Entry entry = new Entry(id, readShape(in));
+                        byId.put(id, entry);
+                        added.add(entry);
+                    }
+                    entries.addAll(fromIndex, added);
+                }
+                case REMOVE -> {
+                    for (int i = 0; i < count; i++) {
+                        Entry entry = byId.remove(in.getLong());
+                        if (entry != null) {
+                            entry.removed = true;
+                        }
+                    }
+                    entries.removeIf(entry -> entry.removed);
+                }
+                case CHANGE -> {
+                    for (int i = 0; i < count; i++) {
+                        Entry entry = byId.get(in.getLong());
+                        ShapeModel shape = readShape(in);
+                        if (entry != null) {
+                            entry.shape = shape;
+                        }
+                    }
+                }
+                case CLEAR -> {
+                    entries.clear();
+                    byId.clear();
+                }
+                default -> throw new IOException("Unknown journal record " + kind);
+            }
+        }
+
+        private static ShapeModel readShape(ByteBuffer in) throws IOException {
+            ShapeStyle style = BinaryDocumentCodec.readStyle(in);
+            return BinaryDocumentCodec.readShape(in, new ShapeStyle[]{style});
+        }
+
+        List<ShapeModel> shapes() {
+            List<ShapeModel> shapes = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                shapes.add(entry.shape);
+            }
+            return shapes;
+        }
+    }
+}
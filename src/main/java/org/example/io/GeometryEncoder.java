@@ -0,0 +1,382 @@
+package org.example.io;
+
+import org.example.models.PathModel;
+import org.example.models.PointArray;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Текстовая запись геометрии в переиспользуемый буфер: числа пишутся через Decimals, без String.format
+// и без отдельной строки на каждое число. Буфер сливается во Writer после каждого элемента, поэтому
+// весь документ целиком в памяти не собирается. Общий для экспорта SVG и JSON; не потокобезопасен.
+// В компактном режиме координаты сначала округляются до целых единиц последнего знака (и к сетке, если
+// она задана), а пути пишутся в кратчайшей форме - относительные смещения считаются в этих единицах
+// точно, поэтому ошибка округления по длине пути не накапливается
+final class GeometryEncoder {
+    // Дальше long-единицы перестают быть точными
+    private static final double MAX_COMPACT_UNITS = 1e15;
+
+    private final int precision;
+    private final long scale;
+    private final double grid;
+    private final boolean compact;
+    private final StringBuilder buffer = new StringBuilder(1024);
+    private char[] transfer = new char[1024];
+    private long bytes;
+
+    // Состояние списка чисел в компактном режиме: нужен ли разделитель перед следующим числом
+    private boolean afterNumber;
+    private boolean afterDot;
+    private final long[] absolute = new long[6];
+    private final long[] relative = new long[6];
+
+    // Некомпактная запись; precision может быть Decimals.LOSSLESS
+    GeometryEncoder(int precision) {
+        this.precision = Decimals.checkPrecisionOrLossless(precision);
+        this.scale = precision == Decimals.LOSSLESS ? 1 : Decimals.scale(precision);
+        this.grid = 0;
+        this.compact = false;
+    }
+
+    GeometryEncoder(int precision, double grid, boolean compact) {
+        this.precision = Decimals.checkPrecision(precision);
+        this.scale = Decimals.scale(precision);
+        this.grid = grid;
+        this.compact = compact;
+    }
+
+    GeometryEncoder text(String value) {
+        buffer.append(value);
+        return this;
+    }
+
+    GeometryEncoder text(char value) {
+        buffer.append(value);
+        return this;
+    }
+
+    GeometryEncoder number(double value) {
+        if (compact) {
+            appendCompact(units(value));
+        } else {
+            Decimals.append(buffer, value, precision);
+        }
+        return this;
+    }
+
+    // Атрибут XML с числовым значением: ` name="value"`
+    GeometryEncoder attribute(String name, double value) {
+        buffer.append(' ').append(name).append("=\"");
+        number(value);
+        buffer.append('"');
+        return this;
+    }
+
+    GeometryEncoder attribute(String name, String value) {
+        buffer.append(' ').append(name).append("=\"").append(value).append('"');
+        return this;
+    }
+
+    // Атрибут-координата: в отличие от толщины линии или размера шрифта привязывается к сетке
+    GeometryEncoder coordinate(String name, double value) {
+        return attribute(name, snap(value));
+    }
+
+    // Равна ли координата нулю после округления и привязки - такой атрибут можно не писать
+    boolean isZero(double value) {
+        return Math.round(snap(value) * scale) == 0;
+    }
+
+    // Текст с экранированием символов разметки XML
+    GeometryEncoder escaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> buffer.append("&amp;");
+                case '<' -> buffer.append("&lt;");
+                case '>' -> buffer.append("&gt;");
+                case '"' -> buffer.append("&quot;");
+                default -> buffer.append(c);
+            }
+        }
+        return this;
+    }
+
+    // Точки для атрибута points: "x,y x,y ..."; в компактном режиме - "x y x-y..."
+    GeometryEncoder points(PointArray points) {
+        if (compact) {
+            afterNumber = false;
+            for (int i = 0; i < points.size(); i++) {
+                listNumber(units(points.get(i)));
+            }
+            return this;
+        }
+        for (int i = 0; i < points.size(); i += 2) {
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            Decimals.append(buffer, snap(points.get(i)), precision);
+            buffer.append(',');
+            Decimals.append(buffer, snap(points.get(i + 1)), precision);
+        }
+        return this;
+    }
+
+    // Плоский массив координат JSON: "[x,y,x,y,...]"
+    GeometryEncoder jsonArray(PointArray points) {
+        buffer.append('[');
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            Decimals.append(buffer, points.get(i), precision);
+        }
+        buffer.append(']');
+        return this;
+    }
+
+    // Данные атрибута d: "M x y L x y C x y, x y, x y Q x y, x y Z"
+    GeometryEncoder pathData(PathModel path) {
+        if (compact) {
+            compactPathData(path);
+            return this;
+        }
+        PointArray c = path.getCoords();
+        int index = 0;
+        for (int i = 0; i < path.getCommandCount(); i++) {
+            char command = path.getCommand(i);
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            buffer.append(command);
+            int count = PathModel.coordCount(command);
+            for (int k = 0; k < count; k += 2) {
+                buffer.append(k == 0 ? " " : ", ");
+                Decimals.append(buffer, snap(c.get(index + k)), precision);
+                buffer.append(' ');
+                Decimals.append(buffer, snap(c.get(index + k + 1)), precision);
+            }
+            index += count;
+        }
+        return this;
+    }
+
+    // Кратчайшая форма: для каждого сегмента выбирается абсолютная или относительная запись, прямые
+    // по осям пишутся как H/V, гладкие продолжения кривых - как S/T, повторная буква команды опускается
+    private void compactPathData(PathModel path) {
+        PointArray c = path.getCoords();
+        long currentX = 0, currentY = 0, startX = 0, startY = 0, controlX = 0, controlY = 0;
+        char previous = 0;     // предыдущий сегмент в исходной форме - для S и T
+        char letter = 0;       // последняя записанная буква, которую можно не повторять
+        afterNumber = false;
+        int index = 0;
+        for (int i = 0; i < path.getCommandCount(); i++) {
+            char command = path.getCommand(i);
+            switch (command) {
+                case 'M' -> {
+                    long x = units(c.get(index)), y = units(c.get(index + 1));
+                    setPoint(0, x, y, currentX, currentY);
+                    letter = segment('M', 2, (char) 0);
+                    // Пары после M читаются как L той же относительности
+                    letter = letter == 'M' ? 'L' : 'l';
+                    currentX = startX = x;
+                    currentY = startY = y;
+                }
+                case 'L' -> {
+                    long x = units(c.get(index)), y = units(c.get(index + 1));
+                    if (y == currentY) {
+                        absolute[0] = x;
+                        relative[0] = x - currentX;
+                        letter = segment('H', 1, letter);
+                    } else if (x == currentX) {
+                        absolute[0] = y;
+                        relative[0] = y - currentY;
+                        letter = segment('V', 1, letter);
+                    } else {
+                        setPoint(0, x, y, currentX, currentY);
+                        letter = segment('L', 2, letter);
+                    }
+                    currentX = x;
+                    currentY = y;
+                }
+                case 'Q' -> {
+                    long x1 = units(c.get(index)), y1 = units(c.get(index + 1));
+                    long x = units(c.get(index + 2)), y = units(c.get(index + 3));
+                    if (previous == 'Q' && x1 == 2 * currentX - controlX && y1 == 2 * currentY - controlY) {
+                        setPoint(0, x, y, currentX, currentY);
+                        letter = segment('T', 2, letter);
+                    } else {
+                        setPoint(0, x1, y1, currentX, currentY);
+                        setPoint(2, x, y, currentX, currentY);
+                        letter = segment('Q', 4, letter);
+                    }
+                    controlX = x1;
+                    controlY = y1;
+                    currentX = x;
+                    currentY = y;
+                }
+                case 'C' -> {
+                    long x1 = units(c.get(index)), y1 = units(c.get(index + 1));
+                    long x2 = units(c.get(index + 2)), y2 = units(c.get(index + 3));
+                    long x = units(c.get(index + 4)), y = units(c.get(index + 5));
+                    if (previous == 'C' && x1 == 2 * currentX - controlX && y1 == 2 * currentY - controlY) {
+                        setPoint(0, x2, y2, currentX, currentY);
+                        setPoint(2, x, y, currentX, currentY);
+                        letter = segment('S', 4, letter);
+                    } else {
+                        setPoint(0, x1, y1, currentX, currentY);
+                        setPoint(2, x2, y2, currentX, currentY);
+                        setPoint(4, x, y, currentX, currentY);
+                        letter = segment('C', 6, letter);
+                    }
+                    controlX = x2;
+                    controlY = y2;
+                    currentX = x;
+                    currentY = y;
+                }
+                default -> {
+                    buffer.append('z');
+                    afterNumber = false;
+                    letter = 'z';
+                    currentX = startX;
+                    currentY = startY;
+                }
+            }
+            previous = command;
+            index += PathModel.coordCount(command);
+        }
+    }
+
+    private void setPoint(int i, long x, long y, long currentX, long currentY) {
+        absolute[i] = x;
+        absolute[i + 1] = y;
+        relative[i] = x - currentX;
+        relative[i + 1] = y - currentY;
+    }
+
+    // Пишет сегмент в более короткой из двух записей и возвращает использованную букву
+    private char segment(char command, int count, char letter) {
+        char relativeCommand = Character.toLowerCase(command);
+        int absoluteLength = command == letter ? 0 : 1;
+        int relativeLength = relativeCommand == letter ? 0 : 1;
+        for (int i = 0; i < count; i++) {
+            absoluteLength += compactLength(absolute[i]);
+            relativeLength += compactLength(relative[i]);
+        }
+        boolean useRelative = relativeLength < absoluteLength;
+        char used = useRelative ? relativeCommand : command;
+        if (used != letter) {
+            buffer.append(used);
+            afterNumber = false;
+        }
+        long[] values = useRelative ? relative : absolute;
+        for (int i = 0; i < count; i++) {
+            listNumber(values[i]);
+        }
+        return used;
+    }
+
+    // Число в списке: разделитель не нужен перед минусом и перед ".5" после дробного числа
+    private void listNumber(long units) {
+        int start = buffer.length();
+        appendCompact(units);
+        char first = buffer.charAt(start);
+        if (afterNumber && first != '-' && !(first == '.' && afterDot)) {
+            buffer.insert(start, ' ');
+        }
+        afterNumber = true;
+        afterDot = units % scale != 0;
+    }
+
+    // Число без ведущего нуля: ".5", "-.25"
+    private void appendCompact(long units) {
+        int start = buffer.length();
+        Decimals.appendUnits(buffer, units, precision);
+        int zero = units < 0 ? start + 1 : start;
+        if (buffer.length() > zero + 1 && buffer.charAt(zero) == '0' && buffer.charAt(zero + 1) == '.') {
+            buffer.deleteCharAt(zero);
+        }
+    }
+
+    // Длина компактной записи числа вместе с разделителем перед ним (кроме отрицательных)
+    private int compactLength(long units) {
+        long value = Math.abs(units);
+        long integer = value / scale, fraction = value % scale;
+        int length = 1;
+        if (integer != 0 || fraction == 0) {
+            length += digits(integer);
+        }
+        if (fraction != 0) {
+            int fractionDigits = precision;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                fractionDigits--;
+            }
+            length += 1 + fractionDigits;
+        }
+        return length;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private double snap(double value) {
+        return grid > 0 ? Math.round(value / grid) * grid : value;
+    }
+
+    private long units(double value) {
+        double scaled = snap(value) * scale;
+        if (!(Math.abs(scaled) < MAX_COMPACT_UNITS)) {
+            throw new IllegalArgumentException("Coordinate cannot be written in compact form: " + value);
+        }
+        return Math.round(scaled);
+    }
+
+    // Размер в байтах UTF-8 всего, что прошло через drainTo и discard
+    long getBytes() {
+        return bytes;
+    }
+
+    // Забирает содержимое буфера строкой, например для JsonWriter.jsonValue
+    String take() {
+        String result = buffer.toString();
+        buffer.setLength(0);
+        return result;
+    }
+
+    // Переносит содержимое буфера во Writer без промежуточной строки
+    void drainTo(Writer writer) throws IOException {
+        int length = buffer.length();
+        if (length > transfer.length) {
+            transfer = new char[Math.max(length, transfer.length * 2)];
+        }
+        buffer.getChars(0, length, transfer, 0);
+        writer.write(transfer, 0, length);
+        bytes += utf8Length();
+        buffer.setLength(0);
+    }
+
+    // Очищает буфер, только посчитав его размер: так измеряется вывод, который не записывается
+    void discard() {
+        bytes += utf8Length();
+        buffer.setLength(0);
+    }
+
+    // Суррогатная пара - 4 байта, по 2 на каждую половину
+    private long utf8Length() {
+        long length = buffer.length();
+        for (int i = 0; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c >= 0x80) {
+                length += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,462 @@
+package org.example.io;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.enums.ShapeType;
+import org.example.models.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Чтение и запись документа в JSON. Работает только с моделью и не требует запущенного JavaFX.
+// Фигуры пишутся и читаются потоково, по одной, через JsonWriter/JsonReader без рефлексии.
+//
+// Текущий формат (версия 3): {"format": "vector-editor", "version": 3, "styles": [...], "shapes": [...]}.
+// Каждый различный стиль хранится в таблице styles один раз, фигуры ссылаются на него номером "s"
+// (0 не пишется). У каждого типа фигуры свой набор коротких полей, значения по умолчанию не пишутся.
+// По умолчанию числа пишутся без потерь - в кратчайшей записи, которая читается в тот же double, так что
+// сохранение и загрузка не меняют геометрию; с явным precision округляются до стольких знаков. Версия 2 отличалась только стилем прямо в фигуре;
+// файлы версии 1 (голый массив ShapeData) читаются через LegacyJsonFormat
+public class JsonDocumentCodec {
+    public static final String FORMAT = "vector-editor";
+    public static final int VERSION = 3;
+    public static final int LOSSLESS = Decimals.LOSSLESS;
+    public static final int DEFAULT_PRECISION = LOSSLESS;
+
+    private final Gson gson = new Gson();
+    private final int precision;
+
+    public JsonDocumentCodec() {
+        this(DEFAULT_PRECISION);
+    }
+
+    // precision - число знаков после точки (с потерей точности) или LOSSLESS
+    public JsonDocumentCodec(int precision) {
+        this.precision = Decimals.checkPrecisionOrLossless(precision);
+    }
+
+    public void write(List<ShapeModel> shapes, Writer writer) throws IOException {
+        JsonWriter out = gson.newJsonWriter(writer);
+        out.beginObject();
+        out.name("format").value(FORMAT);
+        out.name("version").value(VERSION);
+
+        // Первый проход по модели собирает таблицу стилей, второй пишет фигуры
+        Map<ShapeStyle, Integer> styles = new LinkedHashMap<>();
+        for (ShapeModel shape : shapes) {
+            styles.putIfAbsent(shape.getStyle(), styles.size());
+        }
+        out.name("styles").beginArray();
+        for (ShapeStyle style : styles.keySet()) {
+            out.beginObject();
+            writeStyle(out, style, BASE_STYLE);
+            out.endObject();
+        }
+        out.endArray();
+
+        GeometryEncoder geometry = new GeometryEncoder(precision);
+        out.name("shapes").beginArray();
+        for (ShapeModel shape : shapes) {
+            writeShape(out, geometry, shape, styles.get(shape.getStyle()));
+        }
+        out.endArray();
+        out.endObject();
+        out.flush();
+    }
+
+    public List<ShapeModel> read(Reader reader) throws IOException {
+        List<ShapeModel> shapes = new ArrayList<>();
+        read(reader, shapes::add);
+        return shapes;
+    }
+
+    // Каждая прочитанная фигура сразу передаётся в consumer; весь файл в памяти не держится
+    public void read(Reader reader, Consumer<ShapeModel> consumer) throws IOException {
+        JsonReader in = newReader(reader);
+        switch (in.peek()) {
+            case NULL -> in.nextNull();
+            case BEGIN_ARRAY -> readShapes(in, DocumentHeader.LEGACY, consumer);
+            case BEGIN_OBJECT -> readDocument(in, consumer);
+            default -> throw new IOException("Not a vector editor document");
+        }
+    }
+
+    // Всё, что нужно для чтения массива фигур: версия и таблица стилей (null до версии 3)
+    static final class DocumentHeader {
+        static final DocumentHeader LEGACY = new DocumentHeader(1, null);
+
+        final int version;
+        final List<ShapeStyle> styles;
+
+        DocumentHeader(int version, List<ShapeStyle> styles) {
+            this.version = version;
+            this.styles = styles;
+        }
+    }
+
+    // Заголовок документа без фигур - для чтения массива фигур по кускам
+    DocumentHeader readHeader(Reader reader) throws IOException {
+        JsonReader in = newReader(reader);
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            return DocumentHeader.LEGACY;
+        }
+        return readDocument(in, (r, header) -> r.skipValue());
+    }
+
+    // Массив фигур документа с заданным заголовком
+    void readShapes(Reader reader, DocumentHeader header, Consumer<ShapeModel> consumer) throws IOException {
+        readShapes(newReader(reader), header, consumer);
+    }
+
+    private JsonReader newReader(Reader reader) {
+        JsonReader in = gson.newJsonReader(reader);
+        in.setLenient(true);
+        return in;
+    }
+
+    private void readDocument(JsonReader in, Consumer<ShapeModel> consumer) throws IOException {
+        readDocument(in, (r, header) -> readShapes(r, header, consumer));
+    }
+
+    private interface ShapesReader {
+        void read(JsonReader in, DocumentHeader header) throws IOException;
+    }
+
+    // Поля заголовка проверяются по мере чтения; styles пишутся раньше shapes, поэтому
+    // к началу массива фигур таблица стилей уже прочитана
+    private static DocumentHeader readDocument(JsonReader in, ShapesReader shapesReader) throws IOException {
+        int version = VERSION;
+        List<ShapeStyle> styles = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "format" -> {
+                    String format = in.nextString();
+                    if (!FORMAT.equals(format)) {
+                        throw new IOException("Unknown document format: " + format);
+                    }
+                }
+                case "version" -> {
+                    version = in.nextInt();
+                    if (version > VERSION) {
+                        throw new IOException("Document version " + version + " is newer than supported version " + VERSION);
+                    }
+                }
+                case "styles" -> styles = readStyles(in);
+                case "shapes" -> shapesReader.read(in, new DocumentHeader(version, styles));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new DocumentHeader(version, styles);
+    }
+
+    // Одинаковые записи таблицы становятся одним и тем же объектом ShapeStyle
+    private static List<ShapeStyle> readStyles(JsonReader in) throws IOException {
+        List<ShapeStyle> styles = new ArrayList<>();
+        Fields fields = new Fields();
+        in.beginArray();
+        while (in.hasNext()) {
+            fields.reset();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL || !readStyleField(in, name, fields)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            styles.add(toStyle(fields, BASE_STYLE));
+        }
+        in.endArray();
+        return styles;
+    }
+
+    private static void readShapes(JsonReader in, DocumentHeader header, Consumer<ShapeModel> consumer) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        LegacyJsonFormat.Record legacyRecord = header.version == 1 ? new LegacyJsonFormat.Record() : null;
+        Fields fields = new Fields();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            ShapeModel shape = header.version == 1
+                    ? LegacyJsonFormat.readShape(in, legacyRecord)
+                    : readShape(in, fields, header.styles);
+            if (shape != null) {
+                consumer.accept(shape);
+            }
+        }
+        in.endArray();
+    }
+
+    // Основа записей таблицы стилей: совпадающие с ней поля не пишутся
+    private static final ShapeStyle BASE_STYLE = new ShapeStyle(ShapeStyle.BLACK, ShapeStyle.TRANSPARENT, 1);
+
+    // Стиль фигуры версии 2, у которой нет ссылки на таблицу
+    private static ShapeStyle defaultStyle(ShapeType type) {
+        return type == ShapeType.TEXT
+                ? new ShapeStyle(ShapeStyle.TRANSPARENT, ShapeStyle.BLACK, 0, 12, 400)
+                : new ShapeStyle(ShapeStyle.BLACK, ShapeStyle.TRANSPARENT, 1);
+    }
+
+    private static String typeName(ShapeType type) {
+        return switch (type) {
+            case RECTANGLE -> "rect";
+            case ELLIPSE -> "ellipse";
+            case LINE -> "line";
+            case PATH -> "path";
+            case POLYGON -> "polygon";
+            case POLYLINE -> "polyline";
+            case TEXT -> "text";
+        };
+    }
+
+    private static ShapeType parseType(String name) {
+        return switch (name) {
+            case "rect" -> ShapeType.RECTANGLE;
+            case "ellipse" -> ShapeType.ELLIPSE;
+            case "line" -> ShapeType.LINE;
+            case "path" -> ShapeType.PATH;
+            case "polygon" -> ShapeType.POLYGON;
+            case "polyline" -> ShapeType.POLYLINE;
+            case "text" -> ShapeType.TEXT;
+            default -> null;
+        };
+    }
+
+    private void writeShape(JsonWriter out, GeometryEncoder geometry, ShapeModel shape, int styleIndex) throws IOException {
+        out.beginObject();
+        out.name("t").value(typeName(shape.getType()));
+        if (styleIndex != 0) {
+            out.name("s").value(styleIndex);
+        }
+
+        if (shape instanceof RectangleModel rectangle) {
+            writeNumber(out, "x", rectangle.getX());
+            writeNumber(out, "y", rectangle.getY());
+            writeNumber(out, "w", rectangle.getWidth());
+            writeNumber(out, "h", rectangle.getHeight());
+        } else if (shape instanceof EllipseModel ellipse) {
+            writeNumber(out, "cx", ellipse.getCenterX());
+            writeNumber(out, "cy", ellipse.getCenterY());
+            writeNumber(out, "rx", ellipse.getRadiusX());
+            writeNumber(out, "ry", ellipse.getRadiusY());
+        } else if (shape instanceof LineModel line) {
+            writeNumber(out, "x1", line.getStartX());
+            writeNumber(out, "y1", line.getStartY());
+            writeNumber(out, "x2", line.getEndX());
+            writeNumber(out, "y2", line.getEndY());
+        } else if (shape instanceof PolyModel poly) {
+            writePoints(out, geometry, poly.getPoints());
+        } else if (shape instanceof PathModel path) {
+            StringBuilder commands = new StringBuilder(path.getCommandCount());
+            for (int i = 0; i < path.getCommandCount(); i++) {
+                commands.append(path.getCommand(i));
+            }
+            out.name("c").value(commands.toString());
+            writePoints(out, geometry, path.getCoords());
+        } else if (shape instanceof TextModel text) {
+            writeNumber(out, "x", text.getX());
+            writeNumber(out, "y", text.getY());
+            out.name("text").value(text.getText());
+        }
+        out.endObject();
+    }
+
+    private void writeStyle(JsonWriter out, ShapeStyle style, ShapeStyle defaults) throws IOException {
+        if (style.getStrokeColor() != defaults.getStrokeColor()) {
+            out.name("stroke").value(Colors.toCompactHex(style.getStrokeColor()));
+        }
+        if (style.getFillColor() != defaults.getFillColor()) {
+            out.name("fill").value(Colors.toCompactHex(style.getFillColor()));
+        }
+        if (style.getStrokeWidth() != defaults.getStrokeWidth()) {
+            out.name("sw").jsonValue(Decimals.toString(style.getStrokeWidth(), precision));
+        }
+        if (style.getFontSize() != defaults.getFontSize()) {
+            out.name("fs").jsonValue(Decimals.toString(style.getFontSize(), precision));
+        }
+        if (style.getFontWeight() != defaults.getFontWeight()) {
+            out.name("fw").value(style.getFontWeight());
+        }
+    }
+
+    // Нулевые координаты не пишутся: при чтении отсутствующее поле и есть 0
+    private void writeNumber(JsonWriter out, String name, double value) throws IOException {
+        if (value != 0) {
+            out.name(name).jsonValue(Decimals.toString(value, precision));
+        }
+    }
+
+    // Массив координат собирается одной строкой вместо строки на каждое число
+    private void writePoints(JsonWriter out, GeometryEncoder geometry, PointArray points) throws IOException {
+        out.name("p").jsonValue(geometry.jsonArray(points).take());
+    }
+
+    // Поля одной фигуры текущего формата; один экземпляр переиспользуется для всех фигур
+    private static final class Fields {
+        ShapeType type;
+        double x, y, w, h, cx, cy, rx, ry, x1, y1, x2, y2;
+        String commands;
+        PointArray points;
+        String text;
+        String stroke, fill;
+        double strokeWidth, fontSize;
+        int fontWeight;
+        boolean hasStrokeWidth, hasFontSize, hasFontWeight;
+        int style;
+
+        void reset() {
+            type = null;
+            style = 0;
+            x = y = w = h = cx = cy = rx = ry = x1 = y1 = x2 = y2 = 0;
+            commands = text = stroke = fill = null;
+            points = null;
+            hasStrokeWidth = hasFontSize = hasFontWeight = false;
+        }
+    }
+
+    private static ShapeModel readShape(JsonReader in, Fields f, List<ShapeStyle> styles) throws IOException {
+        f.reset();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            if (readStyleField(in, name, f)) {
+                continue;
+            }
+            switch (name) {
+                case "t" -> f.type = parseType(in.nextString());
+                case "s" -> f.style = in.nextInt();
+                case "x" -> f.x = in.nextDouble();
+                case "y" -> f.y = in.nextDouble();
+                case "w" -> f.w = in.nextDouble();
+                case "h" -> f.h = in.nextDouble();
+                case "cx" -> f.cx = in.nextDouble();
+                case "cy" -> f.cy = in.nextDouble();
+                case "rx" -> f.rx = in.nextDouble();
+                case "ry" -> f.ry = in.nextDouble();
+                case "x1" -> f.x1 = in.nextDouble();
+                case "y1" -> f.y1 = in.nextDouble();
+                case "x2" -> f.x2 = in.nextDouble();
+                case "y2" -> f.y2 = in.nextDouble();
+                case "c" -> f.commands = in.nextString();
+                case "p" -> f.points = readPoints(in);
+                case "text" -> f.text = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (f.type == null) {
+            return null;
+        }
+        return toShape(f, toStyle(f, baseStyle(f, styles)));
+    }
+
+    // Стиль из таблицы версии 3 или стиль по умолчанию для типа в версии 2
+    private static ShapeStyle baseStyle(Fields f, List<ShapeStyle> styles) throws IOException {
+        if (styles == null) {
+            return defaultStyle(f.type);
+        }
+        if (f.style < 0 || f.style >= styles.size()) {
+            throw new IOException("Unknown style index: " + f.style);
+        }
+        return styles.get(f.style);
+    }
+
+    private static boolean readStyleField(JsonReader in, String name, Fields f) throws IOException {
+        switch (name) {
+            case "stroke" -> f.stroke = in.nextString();
+            case "fill" -> f.fill = in.nextString();
+            case "sw" -> {
+                f.strokeWidth = in.nextDouble();
+                f.hasStrokeWidth = true;
+            }
+            case "fs" -> {
+                f.fontSize = in.nextDouble();
+                f.hasFontSize = true;
+            }
+            case "fw" -> {
+                f.fontWeight = in.nextInt();
+                f.hasFontWeight = true;
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Поля стиля, заданные явно, поверх base; без явных полей возвращается сам base
+    private static ShapeStyle toStyle(Fields f, ShapeStyle base) {
+        if (f.stroke == null && f.fill == null && !f.hasStrokeWidth && !f.hasFontSize && !f.hasFontWeight) {
+            return base;
+        }
+        return new ShapeStyle(
+                f.stroke != null ? Colors.parse(f.stroke) : base.getStrokeColor(),
+                f.fill != null ? Colors.parse(f.fill) : base.getFillColor(),
+                f.hasStrokeWidth ? f.strokeWidth : base.getStrokeWidth(),
+                f.hasFontSize ? f.fontSize : base.getFontSize(),
+                f.hasFontWeight ? f.fontWeight : base.getFontWeight());
+    }
+
+    private static PointArray readPoints(JsonReader in) throws IOException {
+        PointArray points = new PointArray();
+        in.beginArray();
+        while (in.hasNext()) {
+            double x = in.nextDouble();
+            if (!in.hasNext()) break;
+            points.add(x, in.nextDouble());
+        }
+        in.endArray();
+        return points;
+    }
+
+    private static ShapeModel toShape(Fields f, ShapeStyle style) {
+        double[] points = f.points != null ? f.points.toArray() : null;
+
+        return switch (f.type) {
+            case RECTANGLE -> new RectangleModel(f.x, f.y, f.w, f.h, style);
+            case ELLIPSE -> new EllipseModel(f.cx, f.cy, f.rx, f.ry, style);
+            case LINE -> new LineModel(f.x1, f.y1, f.x2, f.y2, style);
+            case POLYGON -> new PolygonModel(points, style);
+            case POLYLINE -> new PolylineModel(points, style);
+            case PATH -> toPath(f, style);
+            case TEXT -> new TextModel(f.x, f.y, f.text, style);
+        };
+    }
+
+    // Команды пути - строка вида "MLQZ", координаты всех команд - общий массив p
+    private static PathModel toPath(Fields f, ShapeStyle style) {
+        String commands = f.commands != null ? f.commands : "";
+        byte[] packed = new byte[commands.length()];
+        int needed = 0;
+        for (int i = 0; i < packed.length; i++) {
+            char command = commands.charAt(i);
+            if ("MLQCZ".indexOf(command) < 0) {
+                throw new IllegalArgumentException("Unknown path command: " + command);
+            }
+            packed[i] = (byte) command;
+            needed += PathModel.coordCount(command);
+        }
+        PointArray coords = f.points != null ? f.points : new PointArray();
+        if (coords.size() != needed) {
+            throw new IllegalArgumentException("Path has " + coords.size() + " coordinates, expected " + needed);
+        }
+        return new PathModel(packed, packed.length, coords.toArray(), coords.size(), style);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.example.models.*;
+
+import java.io.IOException;
+
+// Чтение прежнего формата (версия 1): верхний массив объектов ShapeData с полным набором полей.
+// Такие файлы по-прежнему открываются, а при сохранении записываются уже в текущей версии
+final class LegacyJsonFormat {
+    private LegacyJsonFormat() {
+    }
+
+    // Поля одной фигуры старого формата; один экземпляр переиспользуется для всех фигур
+    static final class Record {
+        String type;
+        double x, y, width, height;
+        double centerX, centerY, radiusX, radiusY;
+        String strokeColor, fillColor;
+        double strokeWidth;
+        String pathData;
+        PointArray points;
+        boolean hasPoints;
+        String textContent;
+        double fontSize;
+        String textColor;
+        String fontWeight;
+
+        void reset() {
+            type = strokeColor = fillColor = pathData = textContent = textColor = fontWeight = null;
+            x = y = width = height = centerX = centerY = radiusX = radiusY = strokeWidth = fontSize = 0;
+            points = null;
+            hasPoints = false;
+        }
+    }
+
+    static ShapeModel readShape(JsonReader in, Record record) throws IOException {
+        record.reset();
+        readRecord(in, record);
+        return toShape(record);
+    }
+
+    private static void readRecord(JsonReader in, Record record) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type" -> record.type = in.nextString();
+                case "x" -> record.x = in.nextDouble();
+                case "y" -> record.y = in.nextDouble();
+                case "width" -> record.width = in.nextDouble();
+                case "height" -> record.height = in.nextDouble();
+                case "centerX" -> record.centerX = in.nextDouble();
+                case "centerY" -> record.centerY = in.nextDouble();
+                case "radiusX" -> record.radiusX = in.nextDouble();
+                case "radiusY" -> record.radiusY = in.nextDouble();
+                case "strokeColor" -> record.strokeColor = in.nextString();
+                case "fillColor" -> record.fillColor = in.nextString();
+                case "strokeWidth" -> record.strokeWidth = in.nextDouble();
+                case "pathData" -> record.pathData = in.nextString();
+                case "points" -> {
+                    PointArray points = new PointArray();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        double px = in.nextDouble();
+                        if (!in.hasNext()) break;
+                        points.add(px, in.nextDouble());
+                    }
+                    in.endArray();
+                    record.points = points;
+                    record.hasPoints = true;
+                }
+                case "textContent" -> record.textContent = in.nextString();
+                case "fontSize" -> record.fontSize = in.nextDouble();
+                case "textColor" -> record.textColor = in.nextString();
+                case "fontWeight" -> record.fontWeight = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private static ShapeModel toShape(Record record) {
+        if (record.type == null) {
+            return null;
+        }
+        ShapeStyle style = new ShapeStyle(Colors.parse(record.strokeColor), Colors.parse(record.fillColor), record.strokeWidth);
+        double[] points = record.hasPoints ? record.points.toArray() : null;
+
+        return switch (record.type) {
+            case "rectangle" -> new RectangleModel(record.x, record.y, record.width, record.height, style);
+            case "ellipse" -> new EllipseModel(record.centerX, record.centerY, record.radiusX, record.radiusY, style);
+            case "line" -> new LineModel(record.x, record.y, record.width, record.height, style);
+            case "path" -> PathElementParser.parseSvgPath(record.pathData != null ? record.pathData : "", style);
+            case "polygon" -> new PolygonModel(points, style);
+            case "polyline" -> new PolylineModel(points, style.withFillColor(ShapeStyle.TRANSPARENT));
+            // Незавершённые текстовые поля старых файлов загружаются как обычный текст
+            case "text", "textarea" -> new TextModel(record.x, record.y, record.textContent, new ShapeStyle(
+                    ShapeStyle.TRANSPARENT,
+                    "text".equals(record.type) ? Colors.parse(record.textColor) : ShapeStyle.BLACK,
+                    0,
+                    record.fontSize,
+                    fontWeightValue(record.fontWeight)));
+            default -> null;
+        };
+    }
+
+    private static int fontWeightValue(String name) {
+        if (name == null) {
+            return 400;
+        }
+        return switch (name.toLowerCase()) {
+            case "thin", "100" -> 100;
+            case "extra_light", "200" -> 200;
+            case "light", "300" -> 300;
+            case "medium", "500" -> 500;
+            case "semi_bold", "600" -> 600;
+            case "bold", "700" -> 700;
+            case "extra_bold", "800" -> 800;
+            case "black", "900" -> 900;
+            default -> 400;
+        };
+    }
+}
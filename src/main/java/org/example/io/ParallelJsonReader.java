@@ -0,0 +1,328 @@
+package org.example.io;
+
+import org.example.models.ShapeModel;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ObjLongConsumer;
+
+// Параллельное чтение больших JSON-документов. Массив фигур ("shapes" текущего формата или верхний
+// массив версии 1) режется на куски по запятым между объектами, куски разбираются одновременно
+// в пуле fork-join, а результаты выдаются строго в исходном порядке - z-порядок документа сохраняется.
+// Файл читается позиционным FileChannel.read в буферы в куче, а не отображается в память: отображение
+// живёт до сборки мусора, и на Windows документ нельзя было бы сразу сохранить поверх
+public class ParallelJsonReader {
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int WINDOW_BITS = 16;
+
+    private final JsonDocumentCodec codec;
+    private final ForkJoinPool pool;
+    private final int windowBits;
+
+    public ParallelJsonReader(JsonDocumentCodec codec) {
+        this(codec, ForkJoinPool.commonPool());
+    }
+
+    public ParallelJsonReader(JsonDocumentCodec codec, ForkJoinPool pool) {
+        this(codec, pool, WINDOW_BITS);
+    }
+
+    ParallelJsonReader(JsonDocumentCodec codec, ForkJoinPool pool, int windowBits) {
+        this.codec = codec;
+        this.pool = pool;
+        this.windowBits = windowBits;
+    }
+
+    public List<ShapeModel> read(Path file) throws IOException {
+        List<ShapeModel> shapes = new ArrayList<>();
+        read(file, (chunk, offset) -> shapes.addAll(chunk));
+        return shapes;
+    }
+
+    // consumer получает фигуры очередного куска и смещение его конца в файле - для индикатора прогресса.
+    // Если consumer бросает исключение, ещё не разобранные куски отменяются
+    public void read(Path file, ObjLongConsumer<List<ShapeModel>> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            FileBytes buffer = new FileBytes(channel, size, windowBits);
+            int targetChunks = Math.max(1, pool.getParallelism() * CHUNKS_PER_THREAD);
+            long arrayStart = findShapesArray(buffer);
+            long[] bounds = arrayStart < 0 ? null
+                    : findChunks(buffer, arrayStart, Math.max(MIN_CHUNK_BYTES, size / targetChunks));
+            if (bounds == null) {
+                readSequential(file, consumer, size);
+                return;
+            }
+            JsonDocumentCodec.DocumentHeader header = readHeader(buffer, arrayStart, bounds[bounds.length - 1]);
+
+            List<ForkJoinTask<List<ShapeModel>>> tasks = new ArrayList<>(bounds.length / 2);
+            for (int i = 0; i < bounds.length; i += 2) {
+                long from = bounds[i], to = bounds[i + 1];
+                tasks.add(pool.submit(() -> parseChunk(buffer, from, to, header)));
+            }
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    consumer.accept(tasks.get(i).join(), bounds[i * 2 + 1]);
+                }
+            } finally {
+                for (ForkJoinTask<List<ShapeModel>> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void readSequential(Path file, ObjLongConsumer<List<ShapeModel>> consumer, long size) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8))) {
+            consumer.accept(codec.read(reader), size);
+        }
+    }
+
+    private List<ShapeModel> parseChunk(FileBytes buffer, long from, long to, JsonDocumentCodec.DocumentHeader header) {
+        List<ShapeModel> shapes = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(concat(buffer.stream(from, to)), StandardCharsets.UTF_8)) {
+            codec.readShapes(reader, header, shapes::add);
+            return shapes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Версия и таблица стилей берутся из документа, в котором массив фигур заменён на пустой
+    private JsonDocumentCodec.DocumentHeader readHeader(FileBytes buffer, long arrayStart, long arrayEnd) throws IOException {
+        if (buffer.get(skipWhitespace(buffer, 0)) == '[') {
+            return JsonDocumentCodec.DocumentHeader.LEGACY;
+        }
+        InputStream header = new SequenceInputStream(
+                buffer.stream(0, arrayStart),
+                new SequenceInputStream(new ByteArrayInputStream(new byte[]{'[', ']'}),
+                        buffer.stream(arrayEnd + 1, buffer.size())));
+        try (Reader reader = new InputStreamReader(header, StandardCharsets.UTF_8)) {
+            return codec.readHeader(reader);
+        }
+    }
+
+    // Кусок массива оборачивается в [ ], чтобы стать самостоятельным JSON-массивом
+    private static InputStream concat(InputStream chunk) {
+        return new SequenceInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(new byte[]{'['}), chunk),
+                new ByteArrayInputStream(new byte[]{']'}));
+    }
+
+    private static long skipWhitespace(FileBytes buffer, long i) {
+        while (i < buffer.size() && isWhitespace(buffer.get(i))) i++;
+        return i;
+    }
+
+    // Позиция '[' массива фигур: верхний массив старого формата или значение ключа "shapes"
+    // верхнего объекта. -1, если массив не найден
+    static long findShapesArray(FileBytes buffer) {
+        long limit = buffer.size();
+        long start = skipWhitespace(buffer, 0);
+        if (start >= limit) {
+            return -1;
+        }
+        if (buffer.get(start) == '[') {
+            return start;
+        }
+        if (buffer.get(start) != '{') {
+            return -1;
+        }
+
+        byte[] key = "\"shapes\"".getBytes(StandardCharsets.US_ASCII);
+        int depth = 0;
+        for (long i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                long stringStart = i;
+                i = skipString(buffer, i);
+                if (depth == 1 && i - stringStart + 1 == key.length && matches(buffer, stringStart, key)) {
+                    long colon = skipWhitespace(buffer, i + 1);
+                    if (colon < limit && buffer.get(colon) == ':') {
+                        long value = skipWhitespace(buffer, colon + 1);
+                        return value < limit && buffer.get(value) == '[' ? value : -1;
+                    }
+                }
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    // Индекс закрывающей кавычки строки, начинающейся в позиции i
+    private static long skipString(FileBytes buffer, long i) {
+        for (i++; i < buffer.size(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static boolean matches(FileBytes buffer, long at, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(at + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    // Границы кусков парами [from, to) внутри массива, начинающегося в arrayStart; режем только по запятым
+    // вне строк и вложенных значений. Последний элемент - позиция закрывающей ']'. null - если массив не закрыт
+    static long[] findChunks(FileBytes buffer, long arrayStart, long targetBytes) {
+        long limit = buffer.size();
+        List<Long> bounds = new ArrayList<>();
+        long chunkStart = arrayStart + 1;
+        int depth = 0;
+        long end = -1;
+        boolean inString = false;
+        for (long i = arrayStart + 1; i < limit && end < 0; i++) {
+            byte b = buffer.get(i);
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"' -> inString = true;
+                case '{', '[' -> depth++;
+                case '}', ']' -> {
+                    if (depth == 0) {
+                        end = i;
+                    }
+                    depth--;
+                }
+                case ',' -> {
+                    if (depth == 0 && i - chunkStart >= targetBytes) {
+                        bounds.add(chunkStart);
+                        bounds.add(i);
+                        chunkStart = i + 1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        if (end < 0) {
+            return null;
+        }
+        bounds.add(chunkStart);
+        bounds.add(end);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // Байты файла через позиционный FileChannel.read. get - для поиска границ в вызывающем потоке,
+    // через окно в 2^windowBits байт. stream - для кусков: у каждого свой буфер в куче того же размера,
+    // а позиционное чтение канала потокобезопасно, так что куски читаются одновременно
+    static final class FileBytes {
+        private final FileChannel channel;
+        private final long size;
+        private final int bufferSize;
+        private final ByteBuffer window;
+        private long windowStart;
+
+        FileBytes(FileChannel channel, long size, int windowBits) {
+            this.channel = channel;
+            this.size = size;
+            this.bufferSize = (int) Math.max(1, Math.min(1L << windowBits, size));
+            this.window = ByteBuffer.allocate(bufferSize).limit(0);
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long i) {
+            if (i < windowStart || i >= windowStart + window.limit()) {
+                windowStart = i;
+                fill(window, i, Math.min(bufferSize, size - i));
+            }
+            return window.get((int) (i - windowStart));
+        }
+
+        InputStream stream(long from, long to) {
+            return new RangeInputStream(from, to);
+        }
+
+        // length байт с позиции position в начало buffer
+        private void fill(ByteBuffer buffer, long position, long length) {
+            buffer.clear().limit((int) length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException("Unexpected end of file at offset " + (position + buffer.position()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.flip();
+        }
+
+        private final class RangeInputStream extends InputStream {
+            private final ByteBuffer buffer;
+            private final long end;
+            private long position;
+
+            RangeInputStream(long from, long to) {
+                this.buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(bufferSize, to - from))).limit(0);
+                this.end = to;
+                this.position = from;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return refill() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!refill()) return -1;
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            private boolean refill() throws IOException {
+                if (buffer.hasRemaining()) return true;
+                if (position >= end) return false;
+                int length = (int) Math.min(buffer.capacity(), end - position);
+                try {
+                    fill(buffer, position, length);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                position += length;
+                return true;
+            }
+        }
+    }
+}
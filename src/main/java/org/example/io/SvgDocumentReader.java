@@ -0,0 +1,195 @@
+package org.example.io;
+
+import org.example.models.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Потоковый импорт SVG через StAX: фигуры создаются по мере чтения элементов, дерево документа не строится.
+// Рисуются элементы корня и вложенных групп g; содержимое прочих контейнеров (defs, symbol, clipPath...)
+// пропускается. XMLStreamException означает, что файл нужно читать полным SVG-парсером.
+// Числа читаются общим NumberScanner без подстрок, поэтому один экземпляр не читает два файла одновременно
+public class SvgDocumentReader {
+    private static final double DEFAULT_FONT_SIZE = 16;
+
+    private final XMLInputFactory factory;
+    private final NumberScanner numbers = new NumberScanner();
+
+    public SvgDocumentReader() {
+        factory = XMLInputFactory.newFactory();
+        // Внешние DTD и сущности не загружаются: импорт не должен ходить в сеть
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    public List<ShapeModel> read(InputStream input) throws IOException, XMLStreamException {
+        List<ShapeModel> shapes = new ArrayList<>();
+        read(input, shapes::add);
+        return shapes;
+    }
+
+    // Сжатые файлы (.svgz) распознаются по сигнатуре gzip
+    public void read(InputStream input, Consumer<ShapeModel> consumer) throws IOException, XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(Compression.decompressIfNeeded(input));
+        try {
+            read(reader, consumer);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void read(XMLStreamReader reader, Consumer<ShapeModel> consumer) throws XMLStreamException {
+        int depth = 0;            // глубина текущего элемента, корневой svg - 1
+        int skipDepth = 0;        // глубина элемента, внутри которого ничего не рисуется; 0 - не пропускаем
+        TextCollector text = null;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    depth++;
+                    if (text != null) {
+                        text.depth++;
+                        continue;
+                    }
+                    if (skipDepth != 0 || depth == 1) {
+                        continue;
+                    }
+                    String name = reader.getLocalName();
+                    switch (name) {
+                        case "g" -> {
+                        }
+                        case "text" -> text = new TextCollector(reader);
+                        default -> {
+                            ShapeModel shape = readShape(reader, name);
+                            if (shape != null) {
+                                consumer.accept(shape);
+                            }
+                            // Всё, что вложено в фигуру или в неизвестный контейнер, не рисуется
+                            skipDepth = depth;
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    if (text != null) {
+                        text.content.append(reader.getText());
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (text != null && text.depth-- == 0) {
+                        consumer.accept(text.toShape());
+                        text = null;
+                    }
+                    if (depth == skipDepth) {
+                        skipDepth = 0;
+                    }
+                    depth--;
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private ShapeModel readShape(XMLStreamReader reader, String name) {
+        return switch (name) {
+            case "rect" -> new RectangleModel(
+                    number(reader, "x"), number(reader, "y"),
+                    number(reader, "width"), number(reader, "height"),
+                    style(reader, true));
+            case "ellipse" -> new EllipseModel(
+                    number(reader, "cx"), number(reader, "cy"),
+                    number(reader, "rx"), number(reader, "ry"),
+                    style(reader, true));
+            case "line" -> new LineModel(
+                    number(reader, "x1"), number(reader, "y1"),
+                    number(reader, "x2"), number(reader, "y2"),
+                    style(reader, false));
+            case "path" -> {
+                String pathData = attribute(reader, "d");
+                yield pathData == null ? null : PathElementParser.parseSvgPath(pathData, style(reader, true));
+            }
+            case "polygon" -> new PolygonModel(points(attribute(reader, "points")), style(reader, true));
+            case "polyline" -> new PolylineModel(points(attribute(reader, "points")), style(reader, false));
+            default -> null;
+        };
+    }
+
+    // Заливка, как и раньше, учитывается только у замкнутых фигур; без атрибута fill по SVG - чёрная,
+    // без stroke-width толщина обводки по SVG - 1 (MINIFIED такую толщину и не пишет)
+    private ShapeStyle style(XMLStreamReader reader, boolean filled) {
+        String fill = attribute(reader, "fill");
+        String stroke = attribute(reader, "stroke");
+        return new ShapeStyle(
+                Colors.parse(stroke),
+                !filled ? ShapeStyle.TRANSPARENT : fill == null ? ShapeStyle.BLACK : Colors.parse(fill),
+                number(reader, "stroke-width", 1));
+    }
+
+    // Текст элемента text вместе со вложенными tspan
+    private final class TextCollector {
+        final double x, y, fontSize;
+        final int fontWeight;
+        final int fill;
+        final StringBuilder content = new StringBuilder();
+        int depth;
+
+        TextCollector(XMLStreamReader reader) {
+            x = number(reader, "x");
+            y = number(reader, "y");
+            String size = attribute(reader, "font-size");
+            fontSize = size == null ? DEFAULT_FONT_SIZE : numbers.parseNumber(size);
+            fontWeight = parseFontWeight(attribute(reader, "font-weight"));
+            String fillAttribute = attribute(reader, "fill");
+            fill = fillAttribute == null || "none".equals(fillAttribute) ? ShapeStyle.BLACK : Colors.parse(fillAttribute);
+        }
+
+        TextModel toShape() {
+            return new TextModel(x, y, content.toString().trim(),
+                    new ShapeStyle(ShapeStyle.TRANSPARENT, fill, 0, fontSize, fontWeight));
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    // Отсутствующий атрибут координаты или размера по SVG означает 0
+    private double number(XMLStreamReader reader, String name) {
+        return number(reader, name, 0);
+    }
+
+    private double number(XMLStreamReader reader, String name, double defaultValue) {
+        String value = attribute(reader, name);
+        return value == null ? defaultValue : numbers.parseNumber(value);
+    }
+
+    private double[] points(String value) {
+        return value == null ? new double[0] : numbers.parsePoints(value);
+    }
+
+    static int parseFontWeight(String fontWeight) {
+        if (fontWeight == null) {
+            return 400;
+        }
+        return switch (fontWeight.toLowerCase()) {
+            case "100", "thin" -> 100;
+            case "200", "extra-light", "ultra-light" -> 200;
+            case "300", "light" -> 300;
+            case "500", "medium" -> 500;
+            case "600", "semi-bold", "demi-bold" -> 600;
+            case "700", "bold" -> 700;
+            case "800", "extra-bold", "ultra-bold" -> 800;
+            case "900", "black", "heavy" -> 900;
+            default -> 400;
+        };
+    }
+}
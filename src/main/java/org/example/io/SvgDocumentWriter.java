@@ -0,0 +1,222 @@
+package org.example.io;
+
+import org.example.models.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Экспорт документа в SVG по модели, без обращения к узлам сцены. Каждый элемент кодируется
+// в буфер GeometryEncoder и сразу уходит во writer - строка всего документа не собирается.
+// Форма вывода задаётся SvgExportProfile. Для других профилей в том же проходе каждый элемент
+// кодируется ещё и в форме STANDARD, но только измеряется - так считается выигрыш в размере
+public class SvgDocumentWriter {
+    private static final double DEFAULT_FONT_SIZE = 16;
+
+    // Размеры записанного SVG в байтах UTF-8: фактический и того же документа в профиле STANDARD
+    public static final class Sizes {
+        private final long bytes;
+        private final long standardBytes;
+
+        private Sizes(long bytes, long standardBytes) {
+            this.bytes = bytes;
+            this.standardBytes = standardBytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getStandardBytes() {
+            return standardBytes;
+        }
+    }
+
+    public void write(List<ShapeModel> shapes, Writer writer) throws IOException {
+        write(shapes, writer, SvgExportProfile.STANDARD);
+    }
+
+    public Sizes write(List<ShapeModel> shapes, Writer writer, SvgExportProfile profile) throws IOException {
+        GeometryEncoder svg = encoder(profile);
+        SvgExportProfile standardProfile = SvgExportProfile.STANDARD;
+        GeometryEncoder standard = profile == standardProfile ? null : encoder(standardProfile);
+        // Цвета повторяются от фигуры к фигуре - строка для каждого строится один раз
+        Map<Integer, String> colors = new HashMap<>();
+
+        header(svg, shapes, profile);
+        svg.drainTo(writer);
+        if (standard != null) {
+            header(standard, shapes, standardProfile);
+            standard.discard();
+        }
+
+        for (ShapeModel shape : shapes) {
+            element(svg, colors, shape, profile);
+            svg.drainTo(writer);
+            if (standard != null) {
+                element(standard, colors, shape, standardProfile);
+                standard.discard();
+            }
+        }
+
+        svg.text("</svg>");
+        svg.drainTo(writer);
+        if (standard == null) {
+            return new Sizes(svg.getBytes(), svg.getBytes());
+        }
+        standard.text("</svg>");
+        standard.discard();
+        return new Sizes(svg.getBytes(), standard.getBytes());
+    }
+
+    private static GeometryEncoder encoder(SvgExportProfile profile) {
+        return new GeometryEncoder(profile.getPrecision(), profile.getGrid(), profile.isCompact());
+    }
+
+    private static void header(GeometryEncoder svg, List<ShapeModel> shapes, SvgExportProfile profile) {
+        svg.text("<svg xmlns=\"http://www.w3.org/2000/svg\"");
+        if (!profile.isOmitDefaults()) {
+            svg.attribute("version", "1.1");
+        }
+        if (profile.hasViewBox() && !shapes.isEmpty()) {
+            viewBox(svg, shapes);
+        }
+        svg.text('>').text(profile.isCompact() ? "" : "\n");
+    }
+
+    // Элемент фигуры в буфер svg; неизвестные фигуры пропускаются
+    private static void element(GeometryEncoder svg, Map<Integer, String> colors, ShapeModel shape,
+                                SvgExportProfile profile) {
+        boolean compact = profile.isCompact();
+        boolean omitDefaults = profile.isOmitDefaults();
+        String lineEnd = compact ? "" : "\n";
+        ShapeStyle style = shape.getStyle();
+        String fillColor = style.hasFill() ? color(colors, style.getFillColor(), compact) : "none";
+        // Чёрная заливка - значение SVG по умолчанию
+        boolean writeFill = !omitDefaults || !fillColor.equals(color(colors, ShapeStyle.BLACK, compact));
+
+        if (shape instanceof RectangleModel rect) {
+            svg.text("<rect");
+            position(svg, "x", rect.getX(), omitDefaults);
+            position(svg, "y", rect.getY(), omitDefaults);
+            svg.coordinate("width", rect.getWidth()).coordinate("height", rect.getHeight());
+            stroke(svg, colors, style, profile);
+            if (writeFill) svg.attribute("fill", fillColor);
+        } else if (shape instanceof EllipseModel ellipse) {
+            svg.text("<ellipse");
+            position(svg, "cx", ellipse.getCenterX(), omitDefaults);
+            position(svg, "cy", ellipse.getCenterY(), omitDefaults);
+            svg.coordinate("rx", ellipse.getRadiusX()).coordinate("ry", ellipse.getRadiusY());
+            stroke(svg, colors, style, profile);
+            if (writeFill) svg.attribute("fill", fillColor);
+        } else if (shape instanceof LineModel line) {
+            svg.text("<line");
+            position(svg, "x1", line.getStartX(), omitDefaults);
+            position(svg, "y1", line.getStartY(), omitDefaults);
+            position(svg, "x2", line.getEndX(), omitDefaults);
+            position(svg, "y2", line.getEndY(), omitDefaults);
+            stroke(svg, colors, style, profile);
+        } else if (shape instanceof PolygonModel polygon) {
+            svg.text("<polygon points=\"").points(polygon.getPoints()).text('"');
+            stroke(svg, colors, style, profile);
+            if (writeFill) svg.attribute("fill", fillColor);
+        } else if (shape instanceof PolylineModel polyline) {
+            svg.text("<polyline points=\"").points(polyline.getPoints()).text('"');
+            stroke(svg, colors, style, profile);
+            svg.attribute("fill", "none");
+        } else if (shape instanceof PathModel path) {
+            svg.text("<path d=\"").pathData(path).text('"');
+            stroke(svg, colors, style, profile);
+            if (writeFill) svg.attribute("fill", fillColor);
+        } else if (shape instanceof TextModel text) {
+            String textColor = style.hasFill() ? color(colors, style.getFillColor(), compact) : color(colors, ShapeStyle.BLACK, compact);
+
+            String fontWeightString;
+            if (style.getFontWeight() < 400) {
+                fontWeightString = "light";
+            } else if (style.getFontWeight() >= 700) {
+                fontWeightString = "bold";
+            } else {
+                fontWeightString = "normal";
+            }
+            svg.text("<text");
+            position(svg, "x", text.getX(), omitDefaults);
+            position(svg, "y", text.getY(), omitDefaults);
+            if (!omitDefaults || style.getFontSize() != DEFAULT_FONT_SIZE) {
+                svg.attribute("font-size", style.getFontSize());
+            }
+            if (!omitDefaults || !"normal".equals(fontWeightString)) {
+                svg.attribute("font-weight", fontWeightString);
+            }
+            if (!omitDefaults || !textColor.equals(color(colors, ShapeStyle.BLACK, compact))) {
+                svg.attribute("fill", textColor);
+            }
+            svg.text(compact ? ">" : " >").escaped(text.getText()).text("</text>").text(lineEnd);
+            return;
+        } else {
+            return;
+        }
+        svg.text(compact ? "/>" : " />").text(lineEnd);
+    }
+
+    // Позиционные атрибуты по умолчанию равны 0
+    private static void position(GeometryEncoder svg, String name, double value, boolean omitDefaults) {
+        if (!omitDefaults || !svg.isZero(value)) {
+            svg.coordinate(name, value);
+        }
+    }
+
+    // Без обводки по умолчанию stroke="none", толщина по умолчанию - 1
+    private static void stroke(GeometryEncoder svg, Map<Integer, String> colors, ShapeStyle style, SvgExportProfile profile) {
+        if (profile.isOmitDefaults()) {
+            if (!style.hasStroke()) {
+                return;
+            }
+            svg.attribute("stroke", color(colors, style.getStrokeColor(), profile.isCompact()));
+            if (style.getStrokeWidth() != 1) {
+                svg.attribute("stroke-width", style.getStrokeWidth());
+            }
+            return;
+        }
+        svg.attribute("stroke", color(colors, style.getStrokeColor(), profile.isCompact()))
+                .attribute("stroke-width", style.getStrokeWidth());
+    }
+
+    // Габариты документа с учётом обводки, расширенные до целых пикселей
+    private static void viewBox(GeometryEncoder svg, List<ShapeModel> shapes) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (ShapeModel shape : shapes) {
+            Bounds2D bounds = shape.getBounds();
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+        }
+        minX = Math.floor(minX);
+        minY = Math.floor(minY);
+        double width = Math.ceil(maxX) - minX, height = Math.ceil(maxY) - minY;
+        svg.attribute("width", width).attribute("height", height);
+        svg.text(" viewBox=\"").number(minX).text(' ').number(minY).text(' ')
+                .number(width).text(' ').number(height).text('"');
+    }
+
+    // "#RRGGBB" как прежде; в компактном виде - нижний регистр и "#rgb", где это возможно
+    private static String color(Map<Integer, String> colors, int rgba, boolean compact) {
+        // Альфа в запись не попадает, поэтому младший байт ключа занят признаком компактной формы
+        int key = compact ? rgba | 0xFF : rgba & ~0xFF;
+        return colors.computeIfAbsent(key, k -> {
+            String hex = Colors.toHexString(rgba);
+            if (!compact) {
+                return hex;
+            }
+            hex = hex.toLowerCase();
+            if (hex.charAt(1) == hex.charAt(2) && hex.charAt(3) == hex.charAt(4) && hex.charAt(5) == hex.charAt(6)) {
+                return "#" + hex.charAt(1) + hex.charAt(3) + hex.charAt(5);
+            }
+            return hex;
+        });
+    }
+}
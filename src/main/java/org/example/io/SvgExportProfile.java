@@ -0,0 +1,59 @@
+package org.example.io;
+
+// Настройки экспорта SVG. STANDARD - читаемый вывод: абсолютные координаты с точностью до сотых
+// (без хвостовых нулей, в отличие от прежнего %.2f), все атрибуты, элемент на строке. MINIFIED
+// рассчитан на отдачу в веб: компактные числа, относительные и сокращённые команды пути, без атрибутов
+// со значениями по умолчанию, без переводов строк и с viewBox по габаритам документа
+public final class SvgExportProfile {
+    public static final SvgExportProfile STANDARD = new SvgExportProfile(2, 0, false, false, false);
+    public static final SvgExportProfile MINIFIED = new SvgExportProfile(2, 0, true, true, true);
+    public static final int MAX_PRECISION = Decimals.MAX_PRECISION;
+
+    private final int precision;
+    private final double grid;
+    private final boolean compact;
+    private final boolean omitDefaults;
+    private final boolean viewBox;
+
+    // grid - шаг сетки, к которой привязываются координаты; 0 - без привязки
+    public SvgExportProfile(int precision, double grid, boolean compact, boolean omitDefaults, boolean viewBox) {
+        if (!(grid >= 0) || Double.isInfinite(grid)) {
+            throw new IllegalArgumentException("Grid step must be a non-negative number: " + grid);
+        }
+        this.precision = Decimals.checkPrecision(precision);
+        this.grid = grid;
+        this.compact = compact;
+        this.omitDefaults = omitDefaults;
+        this.viewBox = viewBox;
+    }
+
+    public SvgExportProfile withPrecision(int precision) {
+        return new SvgExportProfile(precision, grid, compact, omitDefaults, viewBox);
+    }
+
+    public SvgExportProfile withGrid(double grid) {
+        return new SvgExportProfile(precision, grid, compact, omitDefaults, viewBox);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public double getGrid() {
+        return grid;
+    }
+
+    // Числа без ведущего нуля и лишних разделителей, пути в кратчайшей форме, без переводов строк
+    public boolean isCompact() {
+        return compact;
+    }
+
+    // Не писать атрибуты, значения которых совпадают со значениями SVG по умолчанию
+    public boolean isOmitDefaults() {
+        return omitDefaults;
+    }
+
+    public boolean hasViewBox() {
+        return viewBox;
+    }
+}
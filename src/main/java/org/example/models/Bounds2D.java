@@ -0,0 +1,70 @@
+package org.example.models;
+
+// Осевой прямоугольник в координатах документа
+public final class Bounds2D {
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    public Bounds2D(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public static Bounds2D ofPoints(double[] coords, int length) {
+        if (length < 2) {
+            return new Bounds2D(0, 0, 0, 0);
+        }
+        double minX = coords[0], minY = coords[1], maxX = coords[0], maxY = coords[1];
+        for (int i = 2; i + 1 < length; i += 2) {
+            minX = Math.min(minX, coords[i]);
+            maxX = Math.max(maxX, coords[i]);
+            minY = Math.min(minY, coords[i + 1]);
+            maxY = Math.max(maxY, coords[i + 1]);
+        }
+        return new Bounds2D(minX, minY, maxX, maxY);
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public double getWidth() {
+        return maxX - minX;
+    }
+
+    public double getHeight() {
+        return maxY - minY;
+    }
+
+    public Bounds2D inflate(double amount) {
+        return new Bounds2D(minX - amount, minY - amount, maxX + amount, maxY + amount);
+    }
+
+    public boolean intersects(double otherMinX, double otherMinY, double otherMaxX, double otherMaxY) {
+        return minX <= otherMaxX && otherMinX <= maxX && minY <= otherMaxY && otherMinY <= maxY;
+    }
+
+    public boolean intersects(Bounds2D other) {
+        return intersects(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    public boolean contains(double x, double y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+}
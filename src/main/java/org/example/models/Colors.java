@@ -0,0 +1,68 @@
+package org.example.models;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+// Преобразования между RGBA-цветами модели и цветами JavaFX.
+// Класс Color не требует запущенного тулкита, поэтому им можно пользоваться и без UI
+public final class Colors {
+    private Colors() {
+    }
+
+    public static int toRgba(Paint paint) {
+        if (!(paint instanceof Color color)) {
+            return ShapeStyle.TRANSPARENT;
+        }
+        return (int) Math.round(color.getRed() * 255) << 24
+                | (int) Math.round(color.getGreen() * 255) << 16
+                | (int) Math.round(color.getBlue() * 255) << 8
+                | (int) Math.round(color.getOpacity() * 255);
+    }
+
+    public static Color toColor(int rgba) {
+        return Color.rgb(rgba >>> 24, (rgba >>> 16) & 0xFF, (rgba >>> 8) & 0xFF, (rgba & 0xFF) / 255.0);
+    }
+
+    // Разбор строки цвета: "none", формат Color.toString() ("0xrrggbbaa") и всё, что понимает Color.web
+    public static int parse(String value) {
+        if (value == null || value.isEmpty() || "none".equals(value)) {
+            return ShapeStyle.TRANSPARENT;
+        }
+        long rgba = parseHex(value);
+        return rgba >= 0 ? (int) rgba : toRgba(Color.web(value));
+    }
+
+    // Быстрый разбор "#rrggbb" и "#rrggbbaa" без Color.web; -1, если строка в другом формате
+    private static long parseHex(String value) {
+        int length = value.length();
+        if (value.charAt(0) != '#' || (length != 7 && length != 9)) {
+            return -1;
+        }
+        long rgba = 0;
+        for (int i = 1; i < length; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            rgba = rgba << 4 | digit;
+        }
+        return length == 7 ? rgba << 8 | 0xFF : rgba;
+    }
+
+    // Короткая запись для файлов: "none", "#rrggbb" для непрозрачных цветов, иначе "#rrggbbaa"
+    public static String toCompactHex(int rgba) {
+        if (rgba == ShapeStyle.TRANSPARENT) {
+            return "none";
+        }
+        return (rgba & 0xFF) == 0xFF ? String.format("#%06x", rgba >>> 8) : String.format("#%08x", rgba);
+    }
+
+    // Та же запись, что и у Color.toString(), чтобы файлы оставались совместимыми
+    public static String toWebString(int rgba) {
+        return String.format("0x%08x", rgba);
+    }
+
+    public static String toHexString(int rgba) {
+        return String.format("#%06X", rgba >>> 8);
+    }
+}
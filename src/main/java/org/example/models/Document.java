@@ -0,0 +1,167 @@
+package org.example.models;
+
+import java.util.*;
+
+// Документ: упорядоченный (z-order) список фигур с идентификаторами.
+// Не потокобезопасен: изменяется из одного потока (в редакторе - из FX-потока)
+public class Document {
+    private final List<ShapeModel> shapes = new ArrayList<>();
+    private final Map<Long, ShapeModel> shapesById = new HashMap<>();
+    private final List<DocumentListener> listeners = new ArrayList<>();
+    private long nextId = 1;
+    private int editDepth;
+
+    public void addListener(DocumentListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DocumentListener listener) {
+        listeners.remove(listener);
+    }
+
+    public List<ShapeModel> getShapes() {
+        return Collections.unmodifiableList(shapes);
+    }
+
+    public int size() {
+        return shapes.size();
+    }
+
+    public ShapeModel get(int index) {
+        return shapes.get(index);
+    }
+
+    public ShapeModel getById(long id) {
+        return shapesById.get(id);
+    }
+
+    public boolean contains(ShapeModel shape) {
+        return shape.index >= 0 && shape.index < shapes.size() && shapes.get(shape.index) == shape;
+    }
+
+    public int indexOf(ShapeModel shape) {
+        return contains(shape) ? shape.index : -1;
+    }
+
+    public void add(ShapeModel shape) {
+        add(shapes.size(), shape);
+    }
+
+    public void add(int index, ShapeModel shape) {
+        addAll(index, List.of(shape));
+    }
+
+    public void addAll(Collection<? extends ShapeModel> added) {
+        addAll(shapes.size(), added);
+    }
+
+    public void addAll(int index, Collection<? extends ShapeModel> added) {
+        if (added.isEmpty()) return;
+        List<ShapeModel> batch = new ArrayList<>(added);
+        for (ShapeModel shape : batch) {
+            if (contains(shape)) {
+                throw new IllegalArgumentException("Shape is already in the document: " + shape.getId());
+            }
+            if (shape.getId() == 0) {
+                shape.setId(nextId++);
+            } else {
+                nextId = Math.max(nextId, shape.getId() + 1);
+            }
+            shapesById.put(shape.getId(), shape);
+        }
+        shapes.addAll(index, batch);
+        reindex(index);
+        for (DocumentListener listener : listeners) {
+            listener.shapesAdded(index, batch);
+        }
+    }
+
+    // Возвращает прежнюю позицию фигуры или -1, если её не было в документе
+    public int remove(ShapeModel shape) {
+        int index = indexOf(shape);
+        if (index < 0) return -1;
+        removeAll(List.of(shape));
+        return index;
+    }
+
+    public void removeAll(Collection<? extends ShapeModel> removed) {
+        List<ShapeModel> batch = new ArrayList<>();
+        int firstIndex = shapes.size();
+        for (ShapeModel shape : removed) {
+            if (contains(shape)) {
+                firstIndex = Math.min(firstIndex, shape.index);
+                shape.index = -1;
+                shapesById.remove(shape.getId());
+                batch.add(shape);
+            }
+        }
+        if (batch.isEmpty()) return;
+        shapes.removeIf(shape -> shape.index < 0);
+        reindex(firstIndex);
+        for (DocumentListener listener : listeners) {
+            listener.shapesRemoved(batch);
+        }
+    }
+
+    public void clear() {
+        for (ShapeModel shape : shapes) {
+            shape.index = -1;
+        }
+        shapes.clear();
+        shapesById.clear();
+        for (DocumentListener listener : listeners) {
+            listener.documentCleared();
+        }
+    }
+
+    // Сдвиг группы фигур одним проходом и одним событием shapesChanged
+    public void translate(Collection<? extends ShapeModel> moved, double dx, double dy) {
+        List<ShapeModel> batch = new ArrayList<>(moved.size());
+        for (ShapeModel shape : moved) {
+            if (contains(shape)) {
+                shape.translate(dx, dy);
+                batch.add(shape);
+            }
+        }
+        fireChanged(batch);
+    }
+
+    // Вызывается после изменения геометрии или стиля фигуры
+    public void fireChanged(ShapeModel shape) {
+        fireChanged(List.of(shape));
+    }
+
+    public void fireChanged(List<ShapeModel> changed) {
+        if (changed.isEmpty()) return;
+        for (ShapeModel shape : changed) {
+            shape.version++;
+        }
+        for (DocumentListener listener : listeners) {
+            listener.shapesChanged(changed);
+        }
+    }
+
+    // Длинная правка из многих событий; вложенные правки сливаются с внешней.
+    // Каждому beginEdit должен соответствовать endEdit
+    public void beginEdit() {
+        if (editDepth++ == 0) {
+            for (DocumentListener listener : listeners) {
+                listener.editStarted();
+            }
+        }
+    }
+
+    public void endEdit() {
+        if (editDepth > 0 && --editDepth == 0) {
+            for (DocumentListener listener : listeners) {
+                listener.editFinished();
+            }
+        }
+    }
+
+    private void reindex(int fromIndex) {
+        for (int i = fromIndex; i < shapes.size(); i++) {
+            shapes.get(i).index = i;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.models;
+
+import java.util.List;
+
+// Подписчик на изменения документа (представление, индексы и т.д.)
+public interface DocumentListener {
+    // Фигуры вставлены подряд, начиная с позиции fromIndex
+    default void shapesAdded(int fromIndex, List<ShapeModel> shapes) {
+    }
+
+    default void shapesRemoved(List<ShapeModel> shapes) {
+    }
+
+    // Изменилась геометрия или стиль фигур
+    default void shapesChanged(List<ShapeModel> shapes) {
+    }
+
+    default void documentCleared() {
+    }
+
+    // Начало и конец длинной правки (перетаскивание маркера, загрузка файла): между ними события
+    // приходят часто, и дорогую обработку можно отложить до editFinished
+    default void editStarted() {
+    }
+
+    default void editFinished() {
+    }
+}
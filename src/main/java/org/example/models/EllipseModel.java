@@ -0,0 +1,76 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+public class EllipseModel extends ShapeModel {
+    private double centerX;
+    private double centerY;
+    private double radiusX;
+    private double radiusY;
+
+    public EllipseModel(double centerX, double centerY, double radiusX, double radiusY, ShapeStyle style) {
+        super(style);
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radiusX = radiusX;
+        this.radiusY = radiusY;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.ELLIPSE;
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        centerX += dx;
+        centerY += dy;
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return new double[]{centerX, centerY, radiusX, radiusY};
+    }
+
+    @Override
+    public void setCoordinates(double[] coords) {
+        centerX = coords[0];
+        centerY = coords[1];
+        radiusX = coords[2];
+        radiusY = coords[3];
+    }
+
+    @Override
+    public EllipseModel copy() {
+        return new EllipseModel(centerX, centerY, radiusX, radiusY, getStyle());
+    }
+
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        return new Bounds2D(centerX - radiusX, centerY - radiusY, centerX + radiusX, centerY + radiusY);
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public double getRadiusX() {
+        return radiusX;
+    }
+
+    public void setRadiusX(double radiusX) {
+        this.radiusX = radiusX;
+    }
+
+    public double getRadiusY() {
+        return radiusY;
+    }
+
+    public void setRadiusY(double radiusY) {
+        this.radiusY = radiusY;
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.models;
+
+import java.util.Arrays;
+
+// Поиск фигуры под точкой: кандидаты берутся из пространственного индекса,
+// затем проверяются точно (попадание в заливку или в полосу обводки с допуском).
+// Из нескольких попаданий выбирается верхняя по z-order фигура
+public class HitTester {
+    private static final int CURVE_STEPS = 16;
+
+    private final SpatialIndex spatialIndex;
+
+    public HitTester(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    public ShapeModel hitTest(double x, double y, double tolerance) {
+        ShapeModel[] best = new ShapeModel[1];
+        spatialIndex.query(x - tolerance, y - tolerance, x + tolerance, y + tolerance, shape -> {
+            if ((best[0] == null || shape.getIndex() > best[0].getIndex()) && contains(shape, x, y, tolerance)) {
+                best[0] = shape;
+            }
+        });
+        return best[0];
+    }
+
+    public static boolean contains(ShapeModel shape, double x, double y, double tolerance) {
+        ShapeStyle style = shape.getStyle();
+        boolean filled = style.hasFill();
+        double reach = (style.hasStroke() ? style.getStrokeWidth() / 2 : 0) + tolerance;
+
+        if (shape instanceof RectangleModel rect) {
+            double minX = rect.getX(), minY = rect.getY();
+            double maxX = minX + rect.getWidth(), maxY = minY + rect.getHeight();
+            boolean inside = x >= minX && x <= maxX && y >= minY && y <= maxY;
+            if (filled && inside) return true;
+            double edgeDistance = inside
+                    ? Math.min(Math.min(x - minX, maxX - x), Math.min(y - minY, maxY - y))
+                    : Math.hypot(Math.max(0, Math.max(minX - x, x - maxX)), Math.max(0, Math.max(minY - y, y - maxY)));
+            return edgeDistance <= reach;
+        } else if (shape instanceof EllipseModel ellipse) {
+            double dx = x - ellipse.getCenterX(), dy = y - ellipse.getCenterY();
+            double rx = ellipse.getRadiusX(), ry = ellipse.getRadiusY();
+            if (rx <= 0 || ry <= 0) {
+                return Math.hypot(dx, dy) <= reach;
+            }
+            double f = Math.sqrt(dx * dx / (rx * rx) + dy * dy / (ry * ry));
+            if (filled && f <= 1) return true;
+            // Расстояние до контура вдоль луча из центра - достаточная оценка для попадания мышью
+            double distance = f == 0 ? Math.min(rx, ry) : Math.abs(1 - 1 / f) * Math.hypot(dx, dy);
+            return distance <= reach;
+        } else if (shape instanceof LineModel line) {
+            return segmentDistance(x, y, line.getStartX(), line.getStartY(), line.getEndX(), line.getEndY()) <= reach;
+        } else if (shape instanceof PolyModel poly) {
+            double[] coords = poly.getPoints().array();
+            int length = poly.getPoints().size();
+            boolean closed = shape instanceof PolygonModel;
+            if (closed && filled && windingNumber(coords, length, x, y) != 0) return true;
+            return polylineDistance(coords, length, closed, x, y) <= reach;
+        } else if (shape instanceof PathModel path) {
+            return pathContains(path, filled, reach, x, y);
+        } else if (shape instanceof TextModel) {
+            return shape.getBounds().inflate(tolerance).contains(x, y);
+        }
+        return false;
+    }
+
+    // Путь раскладывается на ломаные (кривые - по CURVE_STEPS отрезков) по подпутям
+    private static boolean pathContains(PathModel path, boolean filled, double reach, double x, double y) {
+        double[] buffer = new double[64];
+        int length = 0;
+        int winding = 0;
+        double lastX = 0, lastY = 0;
+        double[] coords = path.getCoords().array();
+        int next = 0;
+
+        for (int i = 0; i < path.getCommandCount(); i++) {
+            char command = path.getCommand(i);
+            int c = next;
+            next += PathModel.coordCount(command);
+            switch (command) {
+                case 'M' -> {
+                    if (length >= 2) {
+                        if (polylineDistance(buffer, length, false, x, y) <= reach) return true;
+                        winding += windingNumber(buffer, length, x, y);
+                    }
+                    length = 0;
+                    buffer = append(buffer, length, coords[c], coords[c + 1]);
+                    length += 2;
+                    lastX = coords[c];
+                    lastY = coords[c + 1];
+                }
+                case 'L' -> {
+                    buffer = append(buffer, length, coords[c], coords[c + 1]);
+                    length += 2;
+                    lastX = coords[c];
+                    lastY = coords[c + 1];
+                }
+                case 'Q', 'C' -> {
+                    for (int step = 1; step <= CURVE_STEPS; step++) {
+                        double t = (double) step / CURVE_STEPS, u = 1 - t;
+                        double px, py;
+                        if (command == 'Q') {
+                            px = u * u * lastX + 2 * u * t * coords[c] + t * t * coords[c + 2];
+                            py = u * u * lastY + 2 * u * t * coords[c + 1] + t * t * coords[c + 3];
+                        } else {
+                            px = u * u * u * lastX + 3 * u * u * t * coords[c] + 3 * u * t * t * coords[c + 2] + t * t * t * coords[c + 4];
+                            py = u * u * u * lastY + 3 * u * u * t * coords[c + 1] + 3 * u * t * t * coords[c + 3] + t * t * t * coords[c + 5];
+                        }
+                        buffer = append(buffer, length, px, py);
+                        length += 2;
+                    }
+                    lastX = coords[next - 2];
+                    lastY = coords[next - 1];
+                }
+                case 'Z' -> {
+                    if (length >= 2) {
+                        buffer = append(buffer, length, buffer[0], buffer[1]);
+                        length += 2;
+                        lastX = buffer[0];
+                        lastY = buffer[1];
+                    }
+                }
+            }
+        }
+        if (length >= 2) {
+            if (polylineDistance(buffer, length, false, x, y) <= reach) return true;
+            winding += windingNumber(buffer, length, x, y);
+        }
+        return filled && winding != 0;
+    }
+
+    private static double[] append(double[] buffer, int length, double x, double y) {
+        if (length + 2 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length] = x;
+        buffer[length + 1] = y;
+        return buffer;
+    }
+
+    private static double polylineDistance(double[] coords, int length, boolean closed, double x, double y) {
+        if (length < 2) return Double.POSITIVE_INFINITY;
+        if (length == 2) return Math.hypot(x - coords[0], y - coords[1]);
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i + 3 < length; i += 2) {
+            min = Math.min(min, segmentDistance(x, y, coords[i], coords[i + 1], coords[i + 2], coords[i + 3]));
+        }
+        if (closed) {
+            min = Math.min(min, segmentDistance(x, y, coords[length - 2], coords[length - 1], coords[0], coords[1]));
+        }
+        return min;
+    }
+
+    // Число оборотов контура вокруг точки (правило заливки NON_ZERO, как у фигур JavaFX по умолчанию)
+    private static int windingNumber(double[] coords, int length, double x, double y) {
+        int winding = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            double x1 = coords[i], y1 = coords[i + 1];
+            int next = i + 2 < length ? i + 2 : 0;
+            double x2 = coords[next], y2 = coords[next + 1];
+            if (y1 <= y) {
+                if (y2 > y && cross(x1, y1, x2, y2, x, y) > 0) winding++;
+            } else if (y2 <= y && cross(x1, y1, x2, y2, x, y) < 0) {
+                winding--;
+            }
+        }
+        return winding;
+    }
+
+    private static double cross(double x1, double y1, double x2, double y2, double x, double y) {
+        return (x2 - x1) * (y - y1) - (x - x1) * (y2 - y1);
+    }
+
+    private static double segmentDistance(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+}
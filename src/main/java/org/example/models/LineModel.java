@@ -0,0 +1,80 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+public class LineModel extends ShapeModel {
+    private double startX;
+    private double startY;
+    private double endX;
+    private double endY;
+
+    public LineModel(double startX, double startY, double endX, double endY, ShapeStyle style) {
+        super(style);
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.LINE;
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        startX += dx;
+        startY += dy;
+        endX += dx;
+        endY += dy;
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return new double[]{startX, startY, endX, endY};
+    }
+
+    @Override
+    public void setCoordinates(double[] coords) {
+        startX = coords[0];
+        startY = coords[1];
+        endX = coords[2];
+        endY = coords[3];
+    }
+
+    @Override
+    public LineModel copy() {
+        return new LineModel(startX, startY, endX, endY, getStyle());
+    }
+
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        return new Bounds2D(Math.min(startX, endX), Math.min(startY, endY), Math.max(startX, endX), Math.max(startY, endY));
+    }
+
+    public void setStart(double x, double y) {
+        startX = x;
+        startY = y;
+    }
+
+    public void setEnd(double x, double y) {
+        endX = x;
+        endY = y;
+    }
+
+    public double getStartX() {
+        return startX;
+    }
+
+    public double getStartY() {
+        return startY;
+    }
+
+    public double getEndX() {
+        return endX;
+    }
+
+    public double getEndY() {
+        return endY;
+    }
+}
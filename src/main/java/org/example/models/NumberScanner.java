@@ -0,0 +1,209 @@
+package org.example.models;
+
+// Чтение чисел прямо из строки, без подстрок, регулярных выражений и NumberFormat.
+// Понимает запись SVG: знак, дробную часть без целой (".5"), экспоненту ("1e-3") и числа,
+// идущие вплотную ("1.5.5" - это 1.5 и .5, "1-2" - это 1 и -2). Разделители - пробелы и запятые.
+// Экземпляр переиспользуется через reset и не потокобезопасен
+public final class NumberScanner {
+    // Степени десяти, которые double представляет точно: до 1e22 умножение/деление даёт правильно округлённый результат
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CharSequence text;
+    private int position;
+    private int end;
+
+    public NumberScanner() {
+        reset("");
+    }
+
+    public NumberScanner(CharSequence text) {
+        reset(text);
+    }
+
+    public NumberScanner reset(CharSequence text) {
+        this.text = text;
+        this.position = 0;
+        this.end = text.length();
+        return this;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public boolean atEnd() {
+        return position >= end;
+    }
+
+    // Текущий символ без продвижения; 0 в конце строки
+    public char peek() {
+        return position < end ? text.charAt(position) : 0;
+    }
+
+    public void advance() {
+        position++;
+    }
+
+    public void skipWhitespace() {
+        while (position < end && isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    // Пробелы и не больше одной запятой между ними
+    public void skipSeparators() {
+        skipWhitespace();
+        if (position < end && text.charAt(position) == ',') {
+            position++;
+            skipWhitespace();
+        }
+    }
+
+    // Начинается ли с текущей позиции число
+    public boolean hasNumber() {
+        if (position >= end) return false;
+        char c = text.charAt(position);
+        if (c == '+' || c == '-') {
+            if (position + 1 >= end) return false;
+            c = text.charAt(position + 1);
+            if (c == '.') {
+                return position + 2 < end && isDigit(text.charAt(position + 2));
+            }
+            return isDigit(c);
+        }
+        if (c == '.') {
+            return position + 1 < end && isDigit(text.charAt(position + 1));
+        }
+        return isDigit(c);
+    }
+
+    public double nextNumber() {
+        int start = position;
+        boolean negative = false;
+        char c = peek();
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;        // значащие цифры в mantissa
+        int exponent = 0;      // поправка порядка за отброшенные и дробные цифры
+        boolean any = false;
+
+        while (position < end && isDigit(c = text.charAt(position))) {
+            any = true;
+            if (digits < 18) {
+                if (mantissa != 0 || c != '0') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            position++;
+        }
+        if (position < end && text.charAt(position) == '.') {
+            position++;
+            while (position < end && isDigit(c = text.charAt(position))) {
+                any = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || c != '0') {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits++;
+                    }
+                    exponent--;
+                }
+                position++;
+            }
+        }
+        if (!any) {
+            position = start;
+            throw new NumberFormatException("Number expected at position " + start + " in \"" + text + "\"");
+        }
+
+        // Экспонента только если за e/E действительно идут цифры: "1em" - это 1 и единица em
+        if (position < end && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            int mark = position++;
+            boolean negativeExponent = false;
+            if (position < end && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                negativeExponent = text.charAt(position) == '-';
+                position++;
+            }
+            if (position < end && isDigit(text.charAt(position))) {
+                int value = 0;
+                while (position < end && isDigit(c = text.charAt(position))) {
+                    if (value < 100000) {
+                        value = value * 10 + (c - '0');
+                    }
+                    position++;
+                }
+                exponent += negativeExponent ? -value : value;
+            } else {
+                position = mark;
+            }
+        }
+
+        double result;
+        if (mantissa == 0) {
+            result = 0;
+        } else if (mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            result = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+        } else {
+            // Редкий случай: длинная мантисса или большой порядок - точный, но медленный путь
+            result = Double.parseDouble(text.subSequence(start, position).toString());
+            return result;
+        }
+        return negative ? -result : result;
+    }
+
+    // Значение числового атрибута: берётся самое длинное число в начале, единица и всё после неё
+    // отбрасываются ("100%", "12pt", "1.5em"), как это делал прежний разбор через DecimalFormat.
+    // Ошибка - только если в начале нет числа
+    public double parseNumber(CharSequence value) {
+        reset(value);
+        skipWhitespace();
+        return nextNumber();
+    }
+
+    // Список координат x,y с любым сочетанием пробелов и запятых между числами. Как в SVG,
+    // при ошибке остаются точки, прочитанные до неё; непарная последняя координата отбрасывается
+    public double[] parsePoints(CharSequence value) {
+        PointArray points = new PointArray();
+        reset(value);
+        skipWhitespace();
+        while (hasNumber()) {
+            double x = nextNumber();
+            skipSeparators();
+            if (!hasNumber()) {
+                break;
+            }
+            double y = nextNumber();
+            points.add(x, y);
+            skipSeparators();
+        }
+        return points.toArray();
+    }
+
+    // Флаг дуги A: один символ 0 или 1, может идти вплотную к следующему числу ("a1 1 0 00 1 1")
+    public boolean nextFlag() {
+        char c = peek();
+        if (c != '0' && c != '1') {
+            throw new NumberFormatException("Flag expected at position " + position + " in \"" + text + "\"");
+        }
+        position++;
+        return c == '1';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
@@ -6,59 +6,33 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PathElementParser {
-    public static List<PathElement> parseSvgPathData(String pathData) {
-        List<PathElement> elements = new ArrayList<>();
-        String[] tokens = pathData.split("(?=[MLCQZ])");
-
-        for (String token : tokens) {
-            token = token.trim();
-            if (token.isEmpty()) {
-                continue;
-            }
-
-            char command = token.charAt(0);
-            String[] coords = token.substring(1).trim().split("[ ,]+");
-
-            if (coords.length == 0) {
-                continue;
-            }
-
-            switch (command) {
-                case 'M': // MoveTo
-                    if (coords.length >= 2) {
-                        elements.add(new MoveTo(Double.parseDouble(coords[0]), Double.parseDouble(coords[1])));
-                    }
-                    break;
-                case 'L': // LineTo
-                    if (coords.length >= 2) {
-                        elements.add(new LineTo(Double.parseDouble(coords[0]), Double.parseDouble(coords[1])));
-                    }
-                    break;
-                case 'C': // CubicCurveTo
-                    if (coords.length >= 6) {
-                        elements.add(new CubicCurveTo(
-                                Double.parseDouble(coords[0]), Double.parseDouble(coords[1]), // controlX1, controlY1
-                                Double.parseDouble(coords[2]), Double.parseDouble(coords[3]), // controlX2, controlY2
-                                Double.parseDouble(coords[4]), Double.parseDouble(coords[5])  // x, y
-                        ));
-                    }
-                    break;
-                case 'Q': // QuadCurveTo
-                    if (coords.length >= 4) {
-                        elements.add(new QuadCurveTo(
-                                Double.parseDouble(coords[0]), Double.parseDouble(coords[1]), // controlX, controlY
-                                Double.parseDouble(coords[2]), Double.parseDouble(coords[3])  // x, y
-                        ));
-                    }
-                    break;
-                case 'Z': // ClosePath
-                    elements.add(new ClosePath());
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown SVG path command: " + command);
-            }
+    // Развёртка упакованного пути в редактируемые элементы JavaFX
+    public static List<PathElement> toPathElements(PathModel path) {
+        List<PathElement> elements = new ArrayList<>(path.getCommandCount());
+        PointArray c = path.getCoords();
+        int index = 0;
+        for (int i = 0; i < path.getCommandCount(); i++) {
+            char command = path.getCommand(i);
+            elements.add(switch (command) {
+                case 'M' -> new MoveTo(c.get(index), c.get(index + 1));
+                case 'L' -> new LineTo(c.get(index), c.get(index + 1));
+                case 'C' -> new CubicCurveTo(c.get(index), c.get(index + 1), c.get(index + 2), c.get(index + 3),
+                        c.get(index + 4), c.get(index + 5));
+                case 'Q' -> new QuadCurveTo(c.get(index), c.get(index + 1), c.get(index + 2), c.get(index + 3));
+                default -> new ClosePath();
+            });
+            index += PathModel.coordCount(command);
         }
-
         return elements;
     }
-}
\ No newline at end of file
+
+    // Разбор сразу в упакованную модель, без создания узлов JavaFX и объектов на сегмент.
+    // Некорректные данные - ошибка импорта, как и неверные числа или цвета в остальных атрибутах
+    public static PathModel parseSvgPath(String pathData, ShapeStyle style) {
+        PathModel path = new PathModel(style);
+        if (!SvgPathParser.parse(pathData, path)) {
+            throw new IllegalArgumentException("Invalid SVG path data after " + path.getCommandCount() + " segments");
+        }
+        return path;
+    }
+}
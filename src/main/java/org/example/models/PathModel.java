@@ -0,0 +1,128 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+import java.util.Arrays;
+
+// Путь в упакованном виде: массив команд SVG (M, L, Q, C, Z) и общий массив их абсолютных координат.
+// Отдельных объектов на сегмент нет; координаты команды i идут подряд вслед за координатами команд 0..i-1
+public class PathModel extends ShapeModel implements PathSink {
+    private byte[] commands;
+    private int commandCount;
+    private final PointArray coords;
+
+    public PathModel(ShapeStyle style) {
+        super(style);
+        this.commands = new byte[8];
+        this.coords = new PointArray();
+    }
+
+    public PathModel(byte[] commands, int commandCount, double[] coords, int coordCount, ShapeStyle style) {
+        super(style);
+        this.commands = Arrays.copyOf(commands, Math.max(commandCount, 1));
+        this.commandCount = commandCount;
+        this.coords = new PointArray(coords, coordCount);
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.PATH;
+    }
+
+    // Число координат, которое занимает команда
+    public static int coordCount(char command) {
+        return switch (command) {
+            case 'M', 'L' -> 2;
+            case 'Q' -> 4;
+            case 'C' -> 6;
+            default -> 0;
+        };
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    public char getCommand(int i) {
+        if (i >= commandCount) throw new IndexOutOfBoundsException(i);
+        return (char) commands[i];
+    }
+
+    public PointArray getCoords() {
+        return coords;
+    }
+
+    @Override
+    public void moveTo(double x, double y) {
+        appendCommand('M');
+        coords.add(x, y);
+    }
+
+    @Override
+    public void lineTo(double x, double y) {
+        appendCommand('L');
+        coords.add(x, y);
+    }
+
+    @Override
+    public void quadTo(double controlX, double controlY, double x, double y) {
+        appendCommand('Q');
+        coords.add(controlX, controlY);
+        coords.add(x, y);
+    }
+
+    @Override
+    public void curveTo(double controlX1, double controlY1, double controlX2, double controlY2, double x, double y) {
+        appendCommand('C');
+        coords.add(controlX1, controlY1);
+        coords.add(controlX2, controlY2);
+        coords.add(x, y);
+    }
+
+    @Override
+    public void closePath() {
+        appendCommand('Z');
+    }
+
+    private void appendCommand(char command) {
+        if (commandCount == commands.length) {
+            commands = Arrays.copyOf(commands, commands.length * 2);
+        }
+        commands[commandCount++] = (byte) command;
+    }
+
+    // Число опорных и контрольных точек всех сегментов - по одному маркеру на точку
+    public int getPointCount() {
+        return coords.getPointCount();
+    }
+
+    public void setPoint(int pointIndex, double x, double y) {
+        coords.set(pointIndex, x, y);
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        coords.translate(dx, dy);
+    }
+
+    // Оболочка всех точек, включая контрольные: для кривых Безье это гарантированно охватывающий прямоугольник
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        return coords.getBounds();
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return coords.toArray();
+    }
+
+    @Override
+    public void setCoordinates(double[] values) {
+        coords.setAll(values, values.length);
+    }
+
+    @Override
+    public PathModel copy() {
+        return new PathModel(commands, commandCount, coords.array(), coords.size(), getStyle());
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.models;
+
+// Приёмник сегментов пути в абсолютных координатах. Разбор данных SVG пишет сюда напрямую,
+// без промежуточных токенов и объектов на сегмент
+public interface PathSink {
+    void moveTo(double x, double y);
+
+    void lineTo(double x, double y);
+
+    void quadTo(double controlX, double controlY, double x, double y);
+
+    void curveTo(double controlX1, double controlY1, double controlX2, double controlY2, double x, double y);
+
+    void closePath();
+}
@@ -0,0 +1,90 @@
+package org.example.models;
+
+import java.util.Arrays;
+
+// Растущий массив координат x0, y0, x1, y1, ... на примитивном double[] без упаковки в Double
+public final class PointArray {
+    private static final double[] EMPTY = new double[0];
+
+    private double[] coords;
+    private int size;
+
+    public PointArray() {
+        this.coords = EMPTY;
+    }
+
+    public PointArray(double[] coords) {
+        this(coords, coords == null ? 0 : coords.length);
+    }
+
+    public PointArray(double[] coords, int length) {
+        this.coords = length == 0 ? EMPTY : Arrays.copyOf(coords, length);
+        this.size = length;
+    }
+
+    // Число координат (вдвое больше числа точек)
+    public int size() {
+        return size;
+    }
+
+    public int getPointCount() {
+        return size / 2;
+    }
+
+    public double get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException(i);
+        return coords[i];
+    }
+
+    public double getX(int pointIndex) {
+        return get(pointIndex * 2);
+    }
+
+    public double getY(int pointIndex) {
+        return get(pointIndex * 2 + 1);
+    }
+
+    public void add(double x, double y) {
+        if (size + 2 > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(8, coords.length * 2));
+        }
+        coords[size++] = x;
+        coords[size++] = y;
+    }
+
+    public void set(int pointIndex, double x, double y) {
+        int i = pointIndex * 2;
+        if (i + 1 >= size) throw new IndexOutOfBoundsException(pointIndex);
+        coords[i] = x;
+        coords[i + 1] = y;
+    }
+
+    // Замена всех координат одной операцией
+    public void setAll(double[] values, int length) {
+        if (length > coords.length) {
+            coords = new double[length];
+        }
+        System.arraycopy(values, 0, coords, 0, length);
+        size = length;
+    }
+
+    public void translate(double dx, double dy) {
+        for (int i = 0; i < size; i += 2) {
+            coords[i] += dx;
+            coords[i + 1] += dy;
+        }
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(coords, size);
+    }
+
+    public Bounds2D getBounds() {
+        return Bounds2D.ofPoints(coords, size);
+    }
+
+    // Прямой доступ к буферу без копирования; действительны первые size() элементов
+    double[] array() {
+        return coords;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.models;
+
+// Общая часть многоугольника и ломаной: плоский массив координат x0, y0, x1, y1, ...
+public abstract class PolyModel extends ShapeModel {
+    protected final PointArray points;
+
+    protected PolyModel(double[] coords, ShapeStyle style) {
+        super(style);
+        this.points = new PointArray(coords);
+    }
+
+    public PointArray getPoints() {
+        return points;
+    }
+
+    public int getPointCount() {
+        return points.getPointCount();
+    }
+
+    public void addPoint(double x, double y) {
+        points.add(x, y);
+    }
+
+    public void setPoint(int pointIndex, double x, double y) {
+        points.set(pointIndex, x, y);
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        points.translate(dx, dy);
+    }
+
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        return points.getBounds();
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return points.toArray();
+    }
+
+    @Override
+    public void setCoordinates(double[] coords) {
+        points.setAll(coords, coords.length);
+    }
+}
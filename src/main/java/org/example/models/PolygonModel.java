@@ -0,0 +1,19 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+public class PolygonModel extends PolyModel {
+    public PolygonModel(double[] coords, ShapeStyle style) {
+        super(coords, style);
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.POLYGON;
+    }
+
+    @Override
+    public PolygonModel copy() {
+        return new PolygonModel(points.toArray(), getStyle());
+    }
+}
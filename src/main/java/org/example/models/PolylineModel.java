@@ -0,0 +1,19 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+public class PolylineModel extends PolyModel {
+    public PolylineModel(double[] coords, ShapeStyle style) {
+        super(coords, style);
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.POLYLINE;
+    }
+
+    @Override
+    public PolylineModel copy() {
+        return new PolylineModel(points.toArray(), getStyle());
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+public class RectangleModel extends ShapeModel {
+    private double x;
+    private double y;
+    private double width;
+    private double height;
+
+    public RectangleModel(double x, double y, double width, double height, ShapeStyle style) {
+        super(style);
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.RECTANGLE;
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        x += dx;
+        y += dy;
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return new double[]{x, y, width, height};
+    }
+
+    @Override
+    public void setCoordinates(double[] coords) {
+        x = coords[0];
+        y = coords[1];
+        width = coords[2];
+        height = coords[3];
+    }
+
+    @Override
+    public RectangleModel copy() {
+        return new RectangleModel(x, y, width, height, getStyle());
+    }
+
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        return new Bounds2D(x, y, x + width, y + height);
+    }
+
+    public void setBounds(double x, double y, double width, double height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+// Фигура документа. Не зависит от графа сцены: узлы JavaFX строятся по ней в DocumentView
+public abstract class ShapeModel {
+    private long id;
+    private ShapeStyle style;
+    int index = -1; // позиция в документе (z-order), поддерживается Document
+    long version;   // растёт с каждым изменением фигуры в документе
+
+    protected ShapeModel(ShapeStyle style) {
+        this.style = style;
+    }
+
+    public abstract ShapeType getType();
+
+    public abstract void translate(double dx, double dy);
+
+    // Плоский снимок координат фигуры (для истории изменений)
+    public abstract double[] getCoordinates();
+
+    public abstract void setCoordinates(double[] coords);
+
+    public abstract ShapeModel copy();
+
+    // Габариты геометрии без учёта толщины обводки
+    protected abstract Bounds2D getGeometryBounds();
+
+    // Габариты с учётом обводки - по ним работают пространственный индекс и выделение
+    public Bounds2D getBounds() {
+        Bounds2D bounds = getGeometryBounds();
+        double halfStroke = style.hasStroke() ? style.getStrokeWidth() / 2 : 0;
+        return halfStroke > 0 ? bounds.inflate(halfStroke) : bounds;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    // Пара id и версии однозначно задаёт содержимое фигуры - по ней сохранение находит изменённые фигуры
+    public long getVersion() {
+        return version;
+    }
+
+    public ShapeStyle getStyle() {
+        return style;
+    }
+
+    public void setStyle(ShapeStyle style) {
+        this.style = style;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.models;
+
+import java.util.Objects;
+
+// Неизменяемый стиль фигуры. Цвета хранятся как RGBA (0xRRGGBBAA), без зависимостей от JavaFX
+public final class ShapeStyle {
+    public static final int TRANSPARENT = 0x00000000;
+    public static final int BLACK = 0x000000FF;
+
+    private final int strokeColor;
+    private final int fillColor;
+    private final double strokeWidth;
+    private final double fontSize;
+    private final int fontWeight;
+
+    public ShapeStyle(int strokeColor, int fillColor, double strokeWidth) {
+        this(strokeColor, fillColor, strokeWidth, 0, 400);
+    }
+
+    public ShapeStyle(int strokeColor, int fillColor, double strokeWidth, double fontSize, int fontWeight) {
+        this.strokeColor = strokeColor;
+        this.fillColor = fillColor;
+        this.strokeWidth = strokeWidth;
+        this.fontSize = fontSize;
+        this.fontWeight = fontWeight;
+    }
+
+    public int getStrokeColor() {
+        return strokeColor;
+    }
+
+    public int getFillColor() {
+        return fillColor;
+    }
+
+    public double getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    public double getFontSize() {
+        return fontSize;
+    }
+
+    // Насыщенность шрифта в терминах CSS: 100..900
+    public int getFontWeight() {
+        return fontWeight;
+    }
+
+    public boolean hasStroke() {
+        return (strokeColor & 0xFF) != 0 && strokeWidth > 0;
+    }
+
+    public boolean hasFill() {
+        return (fillColor & 0xFF) != 0;
+    }
+
+    public ShapeStyle withStrokeColor(int color) {
+        return new ShapeStyle(color, fillColor, strokeWidth, fontSize, fontWeight);
+    }
+
+    public ShapeStyle withFillColor(int color) {
+        return new ShapeStyle(strokeColor, color, strokeWidth, fontSize, fontWeight);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShapeStyle other)) return false;
+        return strokeColor == other.strokeColor
+                && fillColor == other.fillColor
+                && Double.compare(strokeWidth, other.strokeWidth) == 0
+                && Double.compare(fontSize, other.fontSize) == 0
+                && fontWeight == other.fontWeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(strokeColor, fillColor, strokeWidth, fontSize, fontWeight);
+    }
+}
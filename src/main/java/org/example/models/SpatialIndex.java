@@ -0,0 +1,221 @@
+package org.example.models;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Пространственный индекс габаритов фигур - "рыхлое" квадродерево.
+// Фигура хранится в ячейке, содержащей её центр, на уровне, где размер ячейки не меньше размера фигуры;
+// границы ячейки при поиске расширяются на половину размера, поэтому дробить фигуры не требуется.
+// Корень растёт по мере необходимости, так что координаты документа не ограничены.
+// Обновляется по событиям Document
+public class SpatialIndex implements DocumentListener {
+    private static final double MIN_CELL_SIZE = 8;
+
+    private final Map<ShapeModel, Entry> entries = new HashMap<>();
+    private Cell root;
+
+    private static final class Entry {
+        final ShapeModel shape;
+        double minX, minY, maxX, maxY;
+        Cell cell;
+        int slot;
+
+        Entry(ShapeModel shape) {
+            this.shape = shape;
+        }
+    }
+
+    private static final class Cell {
+        final double x, y, size;
+        final Cell[] children = new Cell[4];
+        Entry[] items = new Entry[0];
+        int count;
+
+        Cell(double x, double y, double size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        void add(Entry entry) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, Math.max(4, count * 2));
+            }
+            entry.cell = this;
+            entry.slot = count;
+            items[count++] = entry;
+        }
+
+        void remove(Entry entry) {
+            Entry last = items[--count];
+            items[entry.slot] = last;
+            last.slot = entry.slot;
+            items[count] = null;
+            entry.cell = null;
+        }
+
+        // Рыхлые границы: ячейка, расширенная на половину своего размера с каждой стороны
+        boolean looselyIntersects(double minX, double minY, double maxX, double maxY) {
+            double half = size / 2;
+            return x - half <= maxX && minX <= x + size + half && y - half <= maxY && minY <= y + size + half;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void insert(ShapeModel shape) {
+        Entry entry = new Entry(shape);
+        setBounds(entry, shape.getBounds());
+        entries.put(shape, entry);
+        place(entry);
+    }
+
+    public void remove(ShapeModel shape) {
+        Entry entry = entries.remove(shape);
+        if (entry != null && entry.cell != null) {
+            entry.cell.remove(entry);
+        }
+    }
+
+    // Перемещение или изменение размера: фигура переносится в другую ячейку, только если это нужно
+    public void update(ShapeModel shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            insert(shape);
+            return;
+        }
+        setBounds(entry, shape.getBounds());
+        Cell cell = entry.cell;
+        if (cell != null && fitsCell(cell, entry) && !fitsChild(cell, entry)) {
+            return;
+        }
+        if (cell != null) {
+            cell.remove(entry);
+        }
+        place(entry);
+    }
+
+    public void clear() {
+        entries.clear();
+        root = null;
+    }
+
+    // Все фигуры, габариты которых пересекают прямоугольник (порядок не определён)
+    public void query(double minX, double minY, double maxX, double maxY, Consumer<ShapeModel> consumer) {
+        if (root != null) {
+            query(root, minX, minY, maxX, maxY, consumer);
+        }
+    }
+
+    public List<ShapeModel> query(Bounds2D bounds) {
+        List<ShapeModel> result = new ArrayList<>();
+        query(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), result::add);
+        return result;
+    }
+
+    private void query(Cell cell, double minX, double minY, double maxX, double maxY, Consumer<ShapeModel> consumer) {
+        for (int i = 0; i < cell.count; i++) {
+            Entry entry = cell.items[i];
+            if (entry.minX <= maxX && minX <= entry.maxX && entry.minY <= maxY && minY <= entry.maxY) {
+                consumer.accept(entry.shape);
+            }
+        }
+        for (Cell child : cell.children) {
+            if (child != null && child.looselyIntersects(minX, minY, maxX, maxY)) {
+                query(child, minX, minY, maxX, maxY, consumer);
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        double centerX = (entry.minX + entry.maxX) / 2;
+        double centerY = (entry.minY + entry.maxY) / 2;
+        double extent = Math.max(entry.maxX - entry.minX, entry.maxY - entry.minY);
+        if (!Double.isFinite(centerX) || !Double.isFinite(centerY) || !Double.isFinite(extent)) {
+            return; // вырожденная геометрия в индекс не попадает
+        }
+
+        if (root == null) {
+            double size = MIN_CELL_SIZE;
+            while (size < extent) {
+                size *= 2;
+            }
+            root = new Cell(Math.floor(centerX / size) * size, Math.floor(centerY / size) * size, size);
+        }
+        while (!fitsCell(root, entry)) {
+            grow(centerX, centerY);
+        }
+
+        Cell cell = root;
+        while (fitsChild(cell, entry)) {
+            double half = cell.size / 2;
+            int quadrant = (centerX >= cell.x + half ? 1 : 0) | (centerY >= cell.y + half ? 2 : 0);
+            Cell child = cell.children[quadrant];
+            if (child == null) {
+                child = new Cell(cell.x + (quadrant & 1) * half, cell.y + (quadrant >> 1) * half, half);
+                cell.children[quadrant] = child;
+            }
+            cell = child;
+        }
+        cell.add(entry);
+    }
+
+    // Удваивает корень в сторону точки, старый корень становится одним из квадрантов
+    private void grow(double towardX, double towardY) {
+        double size = root.size;
+        double x = towardX < root.x ? root.x - size : root.x;
+        double y = towardY < root.y ? root.y - size : root.y;
+        Cell newRoot = new Cell(x, y, size * 2);
+        int quadrant = (root.x > x ? 1 : 0) | (root.y > y ? 2 : 0);
+        newRoot.children[quadrant] = root;
+        root = newRoot;
+    }
+
+    private static boolean fitsCell(Cell cell, Entry entry) {
+        double centerX = (entry.minX + entry.maxX) / 2;
+        double centerY = (entry.minY + entry.maxY) / 2;
+        return centerX >= cell.x && centerX < cell.x + cell.size
+                && centerY >= cell.y && centerY < cell.y + cell.size
+                && Math.max(entry.maxX - entry.minX, entry.maxY - entry.minY) <= cell.size;
+    }
+
+    private static boolean fitsChild(Cell cell, Entry entry) {
+        double half = cell.size / 2;
+        return half >= MIN_CELL_SIZE && Math.max(entry.maxX - entry.minX, entry.maxY - entry.minY) <= half;
+    }
+
+    private static void setBounds(Entry entry, Bounds2D bounds) {
+        entry.minX = bounds.getMinX();
+        entry.minY = bounds.getMinY();
+        entry.maxX = bounds.getMaxX();
+        entry.maxY = bounds.getMaxY();
+    }
+
+    @Override
+    public void shapesAdded(int fromIndex, List<ShapeModel> shapes) {
+        for (ShapeModel shape : shapes) {
+            insert(shape);
+        }
+    }
+
+    @Override
+    public void shapesRemoved(List<ShapeModel> shapes) {
+        for (ShapeModel shape : shapes) {
+            remove(shape);
+        }
+    }
+
+    @Override
+    public void shapesChanged(List<ShapeModel> shapes) {
+        for (ShapeModel shape : shapes) {
+            update(shape);
+        }
+    }
+
+    @Override
+    public void documentCleared() {
+        clear();
+    }
+}
@@ -0,0 +1,231 @@
+package org.example.models;
+
+// Однопроходный разбор атрибута d элемента path. Символы читаются по одному, числа разбираются на месте,
+// сегменты сразу уходят в PathSink в абсолютных координатах. Поддерживаются все команды SVG 1.1
+// (M L H V C S Q T A Z) в абсолютной и относительной форме, неявное повторение команд и экспонента.
+// H и V сводятся к L, S и T - к C и Q с отражённой контрольной точкой, дуги A - к кубическим кривым
+public final class SvgPathParser {
+    private final NumberScanner scanner = new NumberScanner();
+    private PathSink sink;
+
+    private double currentX, currentY;   // текущая точка
+    private double startX, startY;       // начало текущего контура, сюда ведёт Z
+    private double controlX, controlY;   // последняя контрольная точка для S и T
+    private char previous;               // предыдущий сегмент после сведения к абсолютным M L C Q Z
+
+    private SvgPathParser() {
+    }
+
+    // По правилам SVG ошибка в данных не отменяет путь: всё, что разобрано до неё, остаётся.
+    // Возвращает false, если разбор остановился на ошибке
+    public static boolean parse(CharSequence pathData, PathSink sink) {
+        return new SvgPathParser().run(pathData, sink);
+    }
+
+    private boolean run(CharSequence pathData, PathSink sink) {
+        this.sink = sink;
+        NumberScanner s = scanner.reset(pathData);
+        try {
+            while (true) {
+                s.skipWhitespace();
+                if (s.atEnd()) {
+                    return true;
+                }
+                char command = s.peek();
+                if (!isCommand(command) || previous == 0 && command != 'M' && command != 'm') {
+                    return false;
+                }
+                s.advance();
+                if (command == 'Z' || command == 'z') {
+                    sink.closePath();
+                    currentX = startX;
+                    currentY = startY;
+                    previous = 'Z';
+                    continue;
+                }
+                // Повторные наборы аргументов без буквы команды; после M это L
+                do {
+                    segment(command);
+                    if (command == 'M') {
+                        command = 'L';
+                    } else if (command == 'm') {
+                        command = 'l';
+                    }
+                    s.skipSeparators();
+                } while (s.hasNumber());
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void segment(char command) {
+        boolean relative = Character.isLowerCase(command);
+        double dx = relative ? currentX : 0;
+        double dy = relative ? currentY : 0;
+        switch (Character.toUpperCase(command)) {
+            case 'M' -> {
+                double x = number() + dx, y = number() + dy;
+                sink.moveTo(x, y);
+                startX = x;
+                startY = y;
+                moveTo(x, y, 'M');
+            }
+            case 'L' -> {
+                double x = number() + dx, y = number() + dy;
+                sink.lineTo(x, y);
+                moveTo(x, y, 'L');
+            }
+            case 'H' -> {
+                double x = number() + dx;
+                sink.lineTo(x, currentY);
+                moveTo(x, currentY, 'L');
+            }
+            case 'V' -> {
+                double y = number() + dy;
+                sink.lineTo(currentX, y);
+                moveTo(currentX, y, 'L');
+            }
+            case 'C' -> {
+                double x1 = number() + dx, y1 = number() + dy;
+                double x2 = number() + dx, y2 = number() + dy;
+                double x = number() + dx, y = number() + dy;
+                cubic(x1, y1, x2, y2, x, y);
+            }
+            case 'S' -> {
+                double x2 = number() + dx, y2 = number() + dy;
+                double x = number() + dx, y = number() + dy;
+                boolean smooth = previous == 'C';
+                cubic(smooth ? 2 * currentX - controlX : currentX, smooth ? 2 * currentY - controlY : currentY,
+                        x2, y2, x, y);
+            }
+            case 'Q' -> {
+                double x1 = number() + dx, y1 = number() + dy;
+                double x = number() + dx, y = number() + dy;
+                quad(x1, y1, x, y);
+            }
+            case 'T' -> {
+                double x = number() + dx, y = number() + dy;
+                boolean smooth = previous == 'Q';
+                quad(smooth ? 2 * currentX - controlX : currentX, smooth ? 2 * currentY - controlY : currentY, x, y);
+            }
+            case 'A' -> {
+                double rx = number(), ry = number(), rotation = number();
+                boolean largeArc = flag(), sweep = flag();
+                double x = number() + dx, y = number() + dy;
+                arc(rx, ry, rotation, largeArc, sweep, x, y);
+            }
+            default -> throw new NumberFormatException("Unknown SVG path command: " + command);
+        }
+    }
+
+    private void cubic(double x1, double y1, double x2, double y2, double x, double y) {
+        sink.curveTo(x1, y1, x2, y2, x, y);
+        controlX = x2;
+        controlY = y2;
+        moveTo(x, y, 'C');
+    }
+
+    private void quad(double x1, double y1, double x, double y) {
+        sink.quadTo(x1, y1, x, y);
+        controlX = x1;
+        controlY = y1;
+        moveTo(x, y, 'Q');
+    }
+
+    private void moveTo(double x, double y, char segment) {
+        currentX = x;
+        currentY = y;
+        previous = segment;
+    }
+
+    // Дуга по формулам приложения F.6 спецификации SVG: переход к центру эллипса и разбиение
+    // на части не больше 90 градусов, каждая приближается кубической кривой
+    private void arc(double rx, double ry, double rotation, boolean largeArc, boolean sweep, double x, double y) {
+        double x0 = currentX, y0 = currentY;
+        if (x0 == x && y0 == y) {
+            moveTo(x, y, 'L');
+            return;
+        }
+        rx = Math.abs(rx);
+        ry = Math.abs(ry);
+        if (rx == 0 || ry == 0) {
+            sink.lineTo(x, y);
+            moveTo(x, y, 'L');
+            return;
+        }
+
+        double phi = Math.toRadians(rotation % 360);
+        double cos = Math.cos(phi), sin = Math.sin(phi);
+        double hx = (x0 - x) / 2, hy = (y0 - y) / 2;
+        double x1 = cos * hx + sin * hy;
+        double y1 = -sin * hx + cos * hy;
+
+        // Слишком маленькие радиусы увеличиваются, чтобы дуга дотянулась до конечной точки
+        double lambda = (x1 * x1) / (rx * rx) + (y1 * y1) / (ry * ry);
+        if (lambda > 1) {
+            double scale = Math.sqrt(lambda);
+            rx *= scale;
+            ry *= scale;
+        }
+
+        double rx2 = rx * rx, ry2 = ry * ry;
+        double numerator = rx2 * ry2 - rx2 * y1 * y1 - ry2 * x1 * x1;
+        double denominator = rx2 * y1 * y1 + ry2 * x1 * x1;
+        double coefficient = Math.sqrt(Math.max(0, numerator / denominator));
+        if (largeArc == sweep) {
+            coefficient = -coefficient;
+        }
+        double centerX1 = coefficient * rx * y1 / ry;
+        double centerY1 = -coefficient * ry * x1 / rx;
+        double centerX = cos * centerX1 - sin * centerY1 + (x0 + x) / 2;
+        double centerY = sin * centerX1 + cos * centerY1 + (y0 + y) / 2;
+
+        double theta = Math.atan2((y1 - centerY1) / ry, (x1 - centerX1) / rx);
+        double delta = Math.atan2((-y1 - centerY1) / ry, (-x1 - centerX1) / rx) - theta;
+        if (!sweep && delta > 0) {
+            delta -= 2 * Math.PI;
+        } else if (sweep && delta < 0) {
+            delta += 2 * Math.PI;
+        }
+
+        int segments = Math.max(1, (int) Math.ceil(Math.abs(delta) / (Math.PI / 2) - 1e-9));
+        double step = delta / segments;
+        double t = 4.0 / 3.0 * Math.tan(step / 4);
+        double cos1 = Math.cos(theta), sin1 = Math.sin(theta);
+        for (int i = 1; i <= segments; i++) {
+            double angle = theta + step * i;
+            double cos2 = Math.cos(angle), sin2 = Math.sin(angle);
+            // Контрольные точки на единичной окружности, затем масштаб, поворот и перенос в центр
+            double u1 = cos1 - t * sin1, v1 = sin1 + t * cos1;
+            double u2 = cos2 + t * sin2, v2 = sin2 - t * cos2;
+            double endX = i == segments ? x : centerX + rx * cos * cos2 - ry * sin * sin2;
+            double endY = i == segments ? y : centerY + rx * sin * cos2 + ry * cos * sin2;
+            cubic(centerX + rx * cos * u1 - ry * sin * v1, centerY + rx * sin * u1 + ry * cos * v1,
+                    centerX + rx * cos * u2 - ry * sin * v2, centerY + rx * sin * u2 + ry * cos * v2,
+                    endX, endY);
+            cos1 = cos2;
+            sin1 = sin2;
+        }
+        // S после дуги не отражает её контрольную точку
+        previous = 'A';
+    }
+
+    private double number() {
+        scanner.skipSeparators();
+        return scanner.nextNumber();
+    }
+
+    private boolean flag() {
+        scanner.skipSeparators();
+        return scanner.nextFlag();
+    }
+
+    private static boolean isCommand(char c) {
+        return switch (c) {
+            case 'M', 'm', 'L', 'l', 'H', 'h', 'V', 'v', 'C', 'c', 'S', 's',
+                 'Q', 'q', 'T', 't', 'A', 'a', 'Z', 'z' -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.models;
+
+import org.example.enums.ShapeType;
+
+// Текст: цвет берётся из заливки стиля, шрифт - из fontSize/fontWeight стиля
+public class TextModel extends ShapeModel {
+    private double x;
+    private double y;
+    private String text;
+
+    public TextModel(double x, double y, String text, ShapeStyle style) {
+        super(style);
+        this.x = x;
+        this.y = y;
+        this.text = text != null ? text : "";
+    }
+
+    @Override
+    public ShapeType getType() {
+        return ShapeType.TEXT;
+    }
+
+    @Override
+    public void translate(double dx, double dy) {
+        x += dx;
+        y += dy;
+    }
+
+    @Override
+    public double[] getCoordinates() {
+        return new double[]{x, y};
+    }
+
+    @Override
+    public void setCoordinates(double[] coords) {
+        x = coords[0];
+        y = coords[1];
+    }
+
+    @Override
+    public TextModel copy() {
+        return new TextModel(x, y, text, getStyle());
+    }
+
+    // Приблизительные габариты по метрикам шрифта: точные требуют тулкита JavaFX
+    @Override
+    protected Bounds2D getGeometryBounds() {
+        double fontSize = getStyle().getFontSize();
+        int lines = 1;
+        int longestLine = 0;
+        int lineLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+                lineLength = 0;
+            } else {
+                longestLine = Math.max(longestLine, ++lineLength);
+            }
+        }
+        double top = y - fontSize * 0.8;
+        return new Bounds2D(x, top, x + longestLine * fontSize * 0.6, top + lines * fontSize * 1.2);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
@@ -0,0 +1,296 @@
+package org.example.views;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.Effect;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.*;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Translate;
+import org.example.models.*;
+
+import java.util.*;
+
+// Представление документа в графе сцены: держит по одному узлу JavaFX на фигуру
+// и синхронизирует их с моделью по событиям Document.
+// В contentGroup находятся только узлы фигур, в том же порядке, что и в документе
+public class DocumentView implements DocumentListener {
+    private final Group contentGroup;
+    private final Map<ShapeModel, Shape> nodes = new HashMap<>();
+    private final Set<ShapeModel> highlighted = new HashSet<>();
+    private final Set<ShapeModel> editing = new HashSet<>();
+    private final Effect highlightEffect = new DropShadow(6, Color.DODGERBLUE);
+    // Один объект Color на каждый встретившийся RGBA-цвет; узлы с одинаковым цветом делят его
+    private final Map<Integer, Color> paints = new HashMap<>();
+
+    // На время жеста у перетаскиваемых узлов один общий сдвиг; узлы остаются на своих местах в contentGroup
+    private final List<Shape> dragged = new ArrayList<>();
+    private final Translate dragTranslate = new Translate();
+
+    public DocumentView(Document document, Group contentGroup) {
+        this.contentGroup = contentGroup;
+        document.addListener(this);
+    }
+
+    public Shape getNode(ShapeModel shape) {
+        return nodes.get(shape);
+    }
+
+    // Фигура документа, которой принадлежит узел, или null для служебных узлов
+    public ShapeModel getModel(Node node) {
+        return node != null && node.getUserData() instanceof ShapeModel shape && nodes.get(shape) == node ? shape : null;
+    }
+
+    // Подсветка выделения: меняются только узлы, которые вошли в набор или вышли из него
+    public void setHighlighted(Collection<ShapeModel> shapes) {
+        Set<ShapeModel> next = new HashSet<>(shapes);
+        for (Iterator<ShapeModel> it = highlighted.iterator(); it.hasNext(); ) {
+            ShapeModel shape = it.next();
+            if (!next.contains(shape)) {
+                Shape node = nodes.get(shape);
+                if (node != null) {
+                    node.setEffect(null);
+                }
+                it.remove();
+            }
+        }
+        for (ShapeModel shape : next) {
+            Shape node = nodes.get(shape);
+            if (node != null && highlighted.add(shape)) {
+                node.setEffect(highlightEffect);
+            }
+        }
+    }
+
+    // Пути рисуются одним лёгким узлом SVGPath; на время редактирования узел
+    // заменяется на Path с отдельными элементами, а после - обратно
+    public void setEditing(ShapeModel shape, boolean edit) {
+        if (!(shape instanceof PathModel) || (edit ? !editing.add(shape) : !editing.remove(shape))) return;
+        Shape old = nodes.get(shape);
+        if (old == null) return;
+        endDrag();
+
+        Shape node = createNode(shape);
+        node.setUserData(shape);
+        node.setEffect(old.getEffect());
+        nodes.put(shape, node);
+        contentGroup.getChildren().set(shape.getIndex(), node);
+    }
+
+    // Начало перетаскивания: каждому узлу добавляется общий Translate, порядок отрисовки не меняется.
+    // Дальше каждое событие мыши меняет только этот Translate независимо от числа фигур
+    public void beginDrag(Collection<ShapeModel> shapes) {
+        endDrag();
+        for (ShapeModel shape : shapes) {
+            Shape node = nodes.get(shape);
+            if (node != null) {
+                node.getTransforms().add(dragTranslate);
+                dragged.add(node);
+            }
+        }
+    }
+
+    public void dragBy(double dx, double dy) {
+        dragTranslate.setX(dragTranslate.getX() + dx);
+        dragTranslate.setY(dragTranslate.getY() + dy);
+    }
+
+    public boolean isDragging() {
+        return !dragged.isEmpty();
+    }
+
+    // Конец перетаскивания: общий сдвиг снимается с узлов и сбрасывается.
+    // Саму геометрию сдвигает вызывающий код через Document.translate
+    public void endDrag() {
+        if (!isDragging()) return;
+        for (Shape node : dragged) {
+            node.getTransforms().remove(dragTranslate);
+        }
+        dragged.clear();
+        dragTranslate.setX(0);
+        dragTranslate.setY(0);
+    }
+
+    @Override
+    public void shapesAdded(int fromIndex, List<ShapeModel> shapes) {
+        endDrag();
+        List<Shape> added = new ArrayList<>(shapes.size());
+        for (ShapeModel shape : shapes) {
+            Shape node = createNode(shape);
+            node.setUserData(shape);
+            nodes.put(shape, node);
+            added.add(node);
+        }
+        contentGroup.getChildren().addAll(fromIndex, added);
+    }
+
+    @Override
+    public void shapesRemoved(List<ShapeModel> shapes) {
+        endDrag();
+        List<Shape> removed = new ArrayList<>(shapes.size());
+        for (ShapeModel shape : shapes) {
+            Shape node = nodes.remove(shape);
+            if (node != null) {
+                node.setEffect(null);
+                removed.add(node);
+            }
+            highlighted.remove(shape);
+            editing.remove(shape);
+        }
+        contentGroup.getChildren().removeAll(new HashSet<>(removed));
+    }
+
+    @Override
+    public void shapesChanged(List<ShapeModel> shapes) {
+        for (ShapeModel shape : shapes) {
+            Shape node = nodes.get(shape);
+            if (node != null) {
+                updateNode(shape, node);
+            }
+        }
+    }
+
+    @Override
+    public void documentCleared() {
+        dragged.clear();
+        dragTranslate.setX(0);
+        dragTranslate.setY(0);
+        contentGroup.getChildren().clear();
+        nodes.clear();
+        highlighted.clear();
+        editing.clear();
+    }
+
+    private Shape createNode(ShapeModel shape) {
+        Shape node;
+        if (shape instanceof RectangleModel) {
+            node = new Rectangle();
+        } else if (shape instanceof EllipseModel) {
+            node = new Ellipse();
+        } else if (shape instanceof LineModel) {
+            node = new Line();
+        } else if (shape instanceof PolygonModel) {
+            node = new Polygon();
+        } else if (shape instanceof PolylineModel) {
+            node = new Polyline();
+        } else if (shape instanceof PathModel) {
+            node = editing.contains(shape) ? new Path() : new SVGPath();
+        } else if (shape instanceof TextModel) {
+            node = new Text();
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape.getType());
+        }
+        updateNode(shape, node);
+        return node;
+    }
+
+    private void updateNode(ShapeModel shape, Shape node) {
+        ShapeStyle style = shape.getStyle();
+
+        if (shape instanceof RectangleModel rect && node instanceof Rectangle rectangle) {
+            rectangle.setX(rect.getX());
+            rectangle.setY(rect.getY());
+            rectangle.setWidth(rect.getWidth());
+            rectangle.setHeight(rect.getHeight());
+        } else if (shape instanceof EllipseModel model && node instanceof Ellipse ellipse) {
+            ellipse.setCenterX(model.getCenterX());
+            ellipse.setCenterY(model.getCenterY());
+            ellipse.setRadiusX(model.getRadiusX());
+            ellipse.setRadiusY(model.getRadiusY());
+        } else if (shape instanceof LineModel model && node instanceof Line line) {
+            line.setStartX(model.getStartX());
+            line.setStartY(model.getStartY());
+            line.setEndX(model.getEndX());
+            line.setEndY(model.getEndY());
+        } else if (shape instanceof PolygonModel model && node instanceof Polygon polygon) {
+            setPoints(polygon.getPoints(), model.getPoints());
+        } else if (shape instanceof PolylineModel model && node instanceof Polyline polyline) {
+            setPoints(polyline.getPoints(), model.getPoints());
+        } else if (shape instanceof PathModel model && node instanceof SVGPath svgPath) {
+            svgPath.setContent(toSvgContent(model));
+        } else if (shape instanceof PathModel model && node instanceof Path path) {
+            updatePathElements(model, path);
+        } else if (shape instanceof TextModel model && node instanceof Text text) {
+            text.setX(model.getX());
+            text.setY(model.getY());
+            text.setText(model.getText());
+            text.setFont(Font.font("Arial", FontWeight.findByWeight(style.getFontWeight()), style.getFontSize()));
+            text.setFill(paint(style.getFillColor()));
+            return;
+        }
+
+        node.setStroke(paint(style.getStrokeColor()));
+        node.setStrokeWidth(style.getStrokeWidth());
+        node.setFill(paint(style.getFillColor()));
+    }
+
+    private Color paint(int rgba) {
+        return paints.computeIfAbsent(rgba, Colors::toColor);
+    }
+
+    // Данные пути для SVGPath с полной точностью координат
+    private static String toSvgContent(PathModel path) {
+        StringBuilder content = new StringBuilder(path.getCoords().size() * 8);
+        PointArray coords = path.getCoords();
+        int index = 0;
+        for (int i = 0; i < path.getCommandCount(); i++) {
+            char command = path.getCommand(i);
+            content.append(command);
+            int end = index + PathModel.coordCount(command);
+            for (; index < end; index++) {
+                content.append(' ').append(coords.get(index));
+            }
+            content.append(' ');
+        }
+        return content.toString();
+    }
+
+    // При той же структуре пути меняются только координаты существующих элементов
+    private static void updatePathElements(PathModel model, Path path) {
+        ObservableList<PathElement> elements = path.getElements();
+        if (elements.size() != model.getCommandCount()) {
+            elements.setAll(PathElementParser.toPathElements(model));
+            return;
+        }
+        PointArray c = model.getCoords();
+        int i = 0;
+        for (PathElement element : elements) {
+            if (element instanceof MoveTo moveTo) {
+                moveTo.setX(c.get(i));
+                moveTo.setY(c.get(i + 1));
+                i += 2;
+            } else if (element instanceof LineTo lineTo) {
+                lineTo.setX(c.get(i));
+                lineTo.setY(c.get(i + 1));
+                i += 2;
+            } else if (element instanceof QuadCurveTo quad) {
+                quad.setControlX(c.get(i));
+                quad.setControlY(c.get(i + 1));
+                quad.setX(c.get(i + 2));
+                quad.setY(c.get(i + 3));
+                i += 4;
+            } else if (element instanceof CubicCurveTo cubic) {
+                cubic.setControlX1(c.get(i));
+                cubic.setControlY1(c.get(i + 1));
+                cubic.setControlX2(c.get(i + 2));
+                cubic.setControlY2(c.get(i + 3));
+                cubic.setX(c.get(i + 4));
+                cubic.setY(c.get(i + 5));
+                i += 6;
+            }
+        }
+    }
+
+    // Узлы JavaFX хранят точки в ObservableList<Double>; заменяем их одним изменением списка
+    private static void setPoints(ObservableList<Double> target, PointArray points) {
+        Double[] values = new Double[points.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = points.get(i);
+        }
+        target.setAll(values);
+    }
+}